@@ -0,0 +1,66 @@
+package dtw;
+
+import model.BandedMatrix;
+import model.ConstraintRegion;
+import model.TrajectoryStore;
+import model.WarpingPath;
+import org.openjdk.jmh.annotations.*;
+import utility.SyntheticData;
+
+import java.util.concurrent.TimeUnit;
+
+import static utility.MathUtility.*;
+
+/**
+ * DtwEngine on two synthetic trajectories, per distance kernel and row evaluator: the rolling-row distance, the
+ * cumulative cost matrix that warping-path recovery needs, and the path recovered from it.
+ * VECTOR needs the JVM started with --add-modules jdk.incubator.vector, as the jmh profile does.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DtwBenchmark {
+
+    @Param({"256", "1024"})
+    public int seriesLength;
+
+    @Param({"0.05", "0.25"})
+    public double bandwidth;
+
+    @Param({"HAVERSINE", "EQUIRECTANGULAR", "SQUARED_EUCLIDEAN"})
+    public DistanceKernel kernel;
+
+    @Param({"SCALAR", "VECTOR"})
+    public RowEvaluator evaluator;
+
+    private TrajectoryStore store;
+    private ConstraintRegion region;
+    private BandedMatrix cumulativeCostMatrix;
+    private DtwEngine engine;
+
+    @Setup
+    public void setUp() {
+        store = SyntheticData.trajectoryStore(2, seriesLength, 1);
+        region = computeConstraintRegionBounds(seriesLength, seriesLength, bandwidth);
+        engine = new DtwEngine(kernel, evaluator);
+        cumulativeCostMatrix = engine.cumulativeCostMatrix(store, 0, 1, region);
+    }
+
+    @Benchmark
+    public double distance() {
+        return engine.distance(store, 0, 1, region);
+    }
+
+    @Benchmark
+    public BandedMatrix cumulativeCostMatrix() {
+        return engine.cumulativeCostMatrix(store, 0, 1, region);
+    }
+
+    @Benchmark
+    public WarpingPath warpingPath() {
+        return DtwEngine.warpingPath(seriesLength - 1, seriesLength - 1, cumulativeCostMatrix);
+    }
+}
@@ -0,0 +1,55 @@
+package dtw;
+
+import model.SymmetricMatrix;
+import model.TrajectoryStore;
+import org.openjdk.jmh.annotations.*;
+import utility.SyntheticData;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The full all-pairs matrix of PairwiseDistances, per tile size and pool size, to find the tile size that balances
+ * stealing granularity against the per-tile overhead on a given machine.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PairwiseDistancesBenchmark {
+
+    private static final int TRAJECTORY_LENGTH = 100;
+    private static final double BANDWIDTH = 0.1;
+
+    @Param({"64", "256"})
+    public int trajectoryCount;
+
+    @Param({"4", "16", "64"})
+    public int tileSize;
+
+    @Param({"1", "2", "4"})
+    public int poolSize;
+
+    private TrajectoryStore store;
+    private ForkJoinPool pool;
+    private PairwiseDistances distances;
+
+    @Setup
+    public void setUp() {
+        store = SyntheticData.trajectoryStore(trajectoryCount, TRAJECTORY_LENGTH, 1);
+        pool = new ForkJoinPool(poolSize);
+        distances = new PairwiseDistances(store, BANDWIDTH, DistanceKernel.HAVERSINE, tileSize, pool);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public SymmetricMatrix compute() {
+        return distances.compute();
+    }
+}
@@ -0,0 +1,68 @@
+package dtw;
+
+import model.SearchResult;
+import model.TrajectoryStore;
+import org.openjdk.jmh.annotations.*;
+import utility.SyntheticData;
+
+import java.util.concurrent.TimeUnit;
+
+import static utility.MathUtility.*;
+
+/**
+ * One 5-NN query of SimilaritySearch's lower-bound cascade against computing banded DTW to every trajectory, per
+ * kernel. The query cycles through the store, so no single easy query dominates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SimilaritySearchBenchmark {
+
+    private static final int NEAREST_NEIGHBOURS = 5;
+    private static final int TRAJECTORY_LENGTH = 200;
+    private static final double BANDWIDTH = 0.1;
+
+    @Param({"200", "1000"})
+    public int trajectoryCount;
+
+    @Param({"HAVERSINE", "EQUIRECTANGULAR", "SQUARED_EUCLIDEAN"})
+    public DistanceKernel kernel;
+
+    private TrajectoryStore store;
+    private SimilaritySearch search;
+    private DtwEngine engine;
+    private int query;
+
+    @Setup
+    public void setUp() {
+        store = SyntheticData.trajectoryStore(trajectoryCount, TRAJECTORY_LENGTH, 1);
+        engine = new DtwEngine(kernel);
+        search = new SimilaritySearch(store, BANDWIDTH, engine);
+    }
+
+    @Benchmark
+    public SearchResult cascade() {
+        return search.search(nextQuery(), NEAREST_NEIGHBOURS);
+    }
+
+    @Benchmark
+    public double bruteForce() {
+        int queryTrajectory = nextQuery();
+        var region = computeConstraintRegionBounds(TRAJECTORY_LENGTH, TRAJECTORY_LENGTH, BANDWIDTH);
+        double nearest = Double.POSITIVE_INFINITY;
+        for (int candidate = 0; candidate < trajectoryCount; candidate++) {
+            if (candidate != queryTrajectory) {
+                nearest = Math.min(nearest, engine.distance(store, queryTrajectory, candidate, region));
+            }
+        }
+        return nearest;
+    }
+
+    private int nextQuery() {
+        query = (query + 1) % trajectoryCount;
+        return query;
+    }
+}
@@ -0,0 +1,80 @@
+package kkn;
+
+import model.MappedWaveletFile;
+import org.openjdk.jmh.annotations.*;
+import utility.SyntheticData;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static utility.MathUtility.*;
+
+/**
+ * A batch of 10-NN queries over a MappedWaveletFile, answered by one batched search and by one search per query.
+ * Both answer the same batch, so the time per batch compares directly; divide by the batch size for the time per query.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchStepwiseSearchBenchmark {
+
+    private static final int NEAREST_NEIGHBOURS = 10;
+
+    @Param({"10000"})
+    public int datasetSize;
+
+    @Param({"256"})
+    public int seriesLength;
+
+    @Param({"1", "8", "32"})
+    public int batchSize;
+
+    private double[][] queries;
+    private Path waveletFile;
+    private MappedStepwiseSearch search;
+
+    @Setup
+    public void setUp() throws Exception {
+        var random = new Random(1);
+        List<List<Double>> dataSet = new ArrayList<>(datasetSize);
+        for (int record = 0; record < datasetSize; record++) {
+            dataSet.add(discreteHaarWaveletTransform(SyntheticData.series(seriesLength, random)));
+        }
+        queries = new double[batchSize][];
+        for (int query = 0; query < batchSize; query++) {
+            queries[query] = discreteHaarWaveletTransform(SyntheticData.series(seriesLength, random)).stream()
+                    .mapToDouble(Double::doubleValue)
+                    .toArray();
+        }
+
+        waveletFile = Files.createTempFile("batch-stepwise-benchmark", ".wvl");
+        MappedWaveletFile.write(dataSet, waveletFile);
+        search = new MappedStepwiseSearch(MappedWaveletFile.open(waveletFile));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(waveletFile);
+    }
+
+    @Benchmark
+    public int[][] batched() {
+        return search.search(queries, NEAREST_NEIGHBOURS);
+    }
+
+    @Benchmark
+    public int[][] oneByOne() {
+        int[][] nearest = new int[queries.length][];
+        for (int query = 0; query < queries.length; query++) {
+            nearest[query] = search.search(queries[query], NEAREST_NEIGHBOURS);
+        }
+        return nearest;
+    }
+}
@@ -0,0 +1,84 @@
+package kkn;
+
+import model.HaarEnergyIndex;
+import model.MappedWaveletFile;
+import org.openjdk.jmh.annotations.*;
+import utility.SyntheticData;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static utility.MathUtility.*;
+
+/**
+ * One 10-NN query of the stepwise search over random-walk series, in memory as kkn.BaseAlgorithm runs it and over
+ * a MappedWaveletFile of the same records. Each round's bounds run on the calling thread for a pool size of 0, and in
+ * chunks on a fork-join pool of that many threads otherwise, to measure how the search scales with cores.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StepwiseSearchBenchmark {
+
+    private static final int NEAREST_NEIGHBOURS = 10;
+
+    @Param({"1000", "10000"})
+    public int datasetSize;
+
+    @Param({"64", "256"})
+    public int seriesLength;
+
+    @Param({"0", "1", "2", "4"})
+    public int poolSize;
+
+    private List<List<Double>> dataSet;
+    private HaarEnergyIndex energyIndex;
+    private List<Double> query;
+    private double[] primitiveQuery;
+    private ForkJoinPool pool;
+    private Path waveletFile;
+    private MappedStepwiseSearch mappedSearch;
+
+    @Setup
+    public void setUp() throws Exception {
+        var random = new Random(1);
+        dataSet = new ArrayList<>(datasetSize);
+        for (int record = 0; record < datasetSize; record++) {
+            dataSet.add(discreteHaarWaveletTransform(SyntheticData.series(seriesLength, random)));
+        }
+        energyIndex = HaarEnergyIndex.of(dataSet);
+        query = discreteHaarWaveletTransform(SyntheticData.series(seriesLength, random));
+        primitiveQuery = query.stream().mapToDouble(Double::doubleValue).toArray();
+
+        pool = poolSize == 0 ? null : new ForkJoinPool(poolSize);
+        waveletFile = Files.createTempFile("stepwise-benchmark", ".wvl");
+        MappedWaveletFile.write(dataSet, waveletFile);
+        mappedSearch = new MappedStepwiseSearch(MappedWaveletFile.open(waveletFile), pool);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if (pool != null) {
+            pool.shutdown();
+        }
+        Files.deleteIfExists(waveletFile);
+    }
+
+    @Benchmark
+    public List<List<Double>> stepwiseSimilaritySearch() {
+        return BaseAlgorithm.stepwiseSimilaritySearch(dataSet, energyIndex, query, NEAREST_NEIGHBOURS, pool);
+    }
+
+    @Benchmark
+    public int[] mappedStepwiseSearch() {
+        return mappedSearch.search(primitiveQuery, NEAREST_NEIGHBOURS);
+    }
+}
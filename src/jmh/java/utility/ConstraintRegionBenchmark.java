@@ -0,0 +1,35 @@
+package utility;
+
+import model.ConstraintRegion;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sakoe-Chiba band computation, as boxed lists and as the primitive ConstraintRegion.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConstraintRegionBenchmark {
+
+    @Param({"128", "1024", "8192"})
+    public int seriesLength;
+
+    @Param({"0.05", "0.25"})
+    public double bandwidth;
+
+    @Benchmark
+    public List<List<Integer>> computeConstraintRegion() {
+        return MathUtility.computeConstraintRegion(seriesLength, seriesLength + seriesLength / 4, bandwidth);
+    }
+
+    @Benchmark
+    public ConstraintRegion computeConstraintRegionBounds() {
+        return MathUtility.computeConstraintRegionBounds(seriesLength, seriesLength + seriesLength / 4, bandwidth);
+    }
+}
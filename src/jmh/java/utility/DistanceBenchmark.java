@@ -0,0 +1,84 @@
+package utility;
+
+import dtw.DistanceKernel;
+import dtw.RowEvaluator;
+import model.Point;
+import model.PreparedCoordinates;
+import model.TrajectoryStore;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Haversine distance between consecutive fixes of a trajectory, once over Point objects and once over the
+ * columns of a TrajectoryStore, and the band-row costs DtwEngine asks a RowEvaluator for, per evaluator and kernel.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DistanceBenchmark {
+
+    private static final int FIXES = 1024;
+    private static final int ROWS = 64;
+
+    private List<Point> points;
+    private TrajectoryStore store;
+
+    @Setup
+    public void setUp() {
+        points = SyntheticData.trajectory(FIXES, 1);
+        store = SyntheticData.trajectoryStore(1, FIXES, 1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FIXES - 1)
+    public void getDistanceOfPoints(Blackhole blackhole) {
+        for (int i = 1; i < FIXES; i++) {
+            blackhole.consume(MathUtility.getDistance(points.get(i - 1), points.get(i)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FIXES - 1)
+    public void getDistanceInStore(Blackhole blackhole) {
+        for (int i = 1; i < FIXES; i++) {
+            blackhole.consume(MathUtility.getDistance(store, i - 1, i));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS * FIXES)
+    public void rowDistances(RowState state, Blackhole blackhole) {
+        for (int from = 0; from < ROWS; from++) {
+            state.evaluator.rowDistances(state.kernel, state.coordinates, from, FIXES, FIXES, state.output, 0);
+            blackhole.consume(state.output);
+        }
+    }
+
+    /**
+     * A query of ROWS fixes against a candidate of FIXES fixes, so every row is a full-width band row.
+     * VECTOR needs the JVM started with --add-modules jdk.incubator.vector, as the jmh profile does.
+     */
+    @State(Scope.Benchmark)
+    public static class RowState {
+
+        @Param({"SCALAR", "VECTOR"})
+        public RowEvaluator evaluator;
+
+        @Param({"HAVERSINE", "EQUIRECTANGULAR", "SQUARED_EUCLIDEAN"})
+        public DistanceKernel kernel;
+
+        private PreparedCoordinates coordinates;
+        private final double[] output = new double[FIXES];
+
+        @Setup
+        public void setUp() {
+            coordinates = SyntheticData.trajectoryStore(2, FIXES, 1).getPreparedCoordinates();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package utility;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The boxed MathUtility.discreteHaarWaveletTransform against the primitive HaarTransform on the same series.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HaarTransformBenchmark {
+
+    @Param({"64", "1024", "16384"})
+    public int seriesLength;
+
+    private List<Double> series;
+    private double[] primitiveSeries;
+    private double[] output;
+    private final HaarTransform transform = new HaarTransform();
+
+    @Setup
+    public void setUp() {
+        series = SyntheticData.series(seriesLength, new Random(1));
+        primitiveSeries = series.stream().mapToDouble(Double::doubleValue).toArray();
+        output = new double[seriesLength];
+    }
+
+    @Benchmark
+    public List<Double> discreteHaarWaveletTransform() {
+        return MathUtility.discreteHaarWaveletTransform(series);
+    }
+
+    @Benchmark
+    public double[] primitiveTransform() {
+        transform.transform(primitiveSeries, 0, output, 0, seriesLength);
+        return output;
+    }
+}
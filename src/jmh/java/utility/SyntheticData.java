@@ -0,0 +1,70 @@
+package utility;
+
+import lombok.experimental.UtilityClass;
+import model.Point;
+import model.TrajectoryStore;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Reproducible inputs for the benchmarks, so they run offline and every run measures the same data.
+ * Trajectories are random walks of roughly 10 m steps around Copenhagen, one fix per second.
+ */
+@UtilityClass
+public class SyntheticData {
+
+    private final double START_LATITUDE = 55.68;
+    private final double START_LONGITUDE = 12.57;
+    private final double STEP_DEGREES = 0.0001;
+    private final long START_MILLIS = 1_640_995_200_000L;
+
+    /**
+     * @return a store of trajectoryCount trajectories with uniqueIds 0.., each of trajectoryLength fixes
+     */
+    public TrajectoryStore trajectoryStore(int trajectoryCount, int trajectoryLength, long seed) {
+        var random = new Random(seed);
+        var builder = new TrajectoryStore.Builder();
+        for (int trajectory = 0; trajectory < trajectoryCount; trajectory++) {
+            double latitude = START_LATITUDE + random.nextGaussian() * 0.01;
+            double longitude = START_LONGITUDE + random.nextGaussian() * 0.01;
+            for (int fix = 0; fix < trajectoryLength; fix++) {
+                builder.add(trajectory, latitude, longitude, START_MILLIS + fix * 1000L);
+                latitude += random.nextGaussian() * STEP_DEGREES;
+                longitude += random.nextGaussian() * STEP_DEGREES;
+            }
+        }
+        return builder.build();
+    }
+
+    public List<Point> trajectory(int trajectoryLength, long seed) {
+        var random = new Random(seed);
+        List<Point> points = new ArrayList<>(trajectoryLength);
+        double latitude = START_LATITUDE;
+        double longitude = START_LONGITUDE;
+        for (int fix = 0; fix < trajectoryLength; fix++) {
+            var timestamp = OffsetDateTime.ofInstant(Instant.ofEpochMilli(START_MILLIS + fix * 1000L), ZoneOffset.UTC);
+            points.add(new Point(timestamp, latitude, longitude, (int) seed));
+            latitude += random.nextGaussian() * STEP_DEGREES;
+            longitude += random.nextGaussian() * STEP_DEGREES;
+        }
+        return points;
+    }
+
+    /**
+     * @return a random walk of seriesLength values, as the series the stepwise k-NN search indexes
+     */
+    public List<Double> series(int seriesLength, Random random) {
+        List<Double> series = new ArrayList<>(seriesLength);
+        double value = 0;
+        for (int i = 0; i < seriesLength; i++) {
+            value += random.nextGaussian();
+            series.add(value);
+        }
+        return series;
+    }
+}
@@ -0,0 +1,70 @@
+package utility;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TimestampParser against ZonedDateTime.parse on a day of GPS timestamps, one fix every 10 seconds as in the
+ * exports, in the zone ProcessingUtility reads them in. The transition day goes through java.time for every row,
+ * so it shows what the fallback costs.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TimestampParserBenchmark {
+
+    private static final int ROWS = 8640;
+    private static final ZoneId ZONE = ZoneId.of("Europe/Copenhagen");
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss", Locale.US).withZone(ZONE);
+
+    @Param({"2014-09-13", "2014-10-26"})
+    public String day;
+
+    private String[] timestamps;
+    private TimestampParser parser;
+
+    @Setup
+    public void setUp() {
+        var start = LocalDateTime.parse(day + "T00:00:00");
+        timestamps = new String[ROWS];
+        for (int row = 0; row < ROWS; row++) {
+            timestamps[row] = start.plusSeconds(row * 10L).format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        }
+        parser = new TimestampParser(ZONE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void parseEpochMillis(Blackhole blackhole) {
+        for (String timestamp : timestamps) {
+            blackhole.consume(parser.parseEpochMillis(timestamp));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void parseOffsetDateTime(Blackhole blackhole) {
+        for (String timestamp : timestamps) {
+            blackhole.consume(parser.parseOffsetDateTime(timestamp));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void zonedDateTimeParse(Blackhole blackhole) {
+        for (String timestamp : timestamps) {
+            blackhole.consume(OffsetDateTime.from(ZonedDateTime.parse(timestamp, FORMAT)));
+        }
+    }
+}
@@ -2,59 +2,92 @@ package dtw;
 
 import com.github.sh0nk.matplotlib4j.Plot;
 import lombok.SneakyThrows;
-import model.Point;
+import model.BandedMatrix;
+import model.ConstraintRegion;
+import model.MappedTrajectoryFile;
+import model.TrajectoryStore;
+import org.jboss.logging.Logger;
 import utility.FileUtility;
+import utility.Simplification;
 
 import java.util.*;
 
-import static utility.LogUtility.*;
 import static utility.MathUtility.*;
 import static utility.ProcessingUtility.*;
 
 public class BaseAlgorithm {
 
+    private static final Logger LOG = Logger.getLogger(BaseAlgorithm.class);
     private static final Random random = new Random();
+    private static final String BINARY_EXTENSION = ".trj";
+    // Run with -Ddtw.distanceOnly=true to print the DTW distance without building the matrix or the warping path
+    private static final boolean DISTANCE_ONLY = Boolean.getBoolean("dtw.distanceOnly");
+    // Run with -Ddtw.fastRadius=<radius> to print the approximate FastDTW distance next to the exact, unbanded one
+    private static final int FAST_DTW_RADIUS = Integer.getInteger("dtw.fastRadius", -1);
+    // Run with -Ddtw.simplification=<mode> -Ddtw.simplificationParameter=<value> to shrink the trajectories before DTW
+    private static final Simplification SIMPLIFICATION = Simplification.valueOf(System.getProperty("dtw.simplification", "NONE"));
+    private static final double SIMPLIFICATION_PARAMETER = Double.parseDouble(System.getProperty("dtw.simplificationParameter", "0"));
 
     @SneakyThrows
     public static void main(String[] args) {
-        var trajectories = extractTrajectories(args);
+        var simplified = SIMPLIFICATION.apply(extractTrajectories(args), SIMPLIFICATION_PARAMETER);
+        var trajectories = simplified.getStore();
+        LOG.infof("Simplification %s: %s", SIMPLIFICATION, simplified);
         var randomIndex = generateIndexFrom(trajectories);
         var anotherRandomIndex = generateIndexFrom(trajectories);
-        var sampleTrajectory = trajectories.get(2);
-        var randomTrajectory = trajectories.get(3);
-        var sampleWithNoise = addNoise(sampleTrajectory, 0.0005);
+        int sampleTrajectory = 2;
+        int randomTrajectory = 3;
+        int sampleSize = trajectories.getLength(sampleTrajectory);
+        int randomSize = trajectories.getLength(randomTrajectory);
+        var sampleWithNoise = addNoise(trajectories.getPoints(sampleTrajectory), 0.0005);
 
 //        int randomBandwidth = random.nextInt(20, 30);
         double randomBandwidth = random.nextDouble(0, 1);
 
-        var constraintRegion = computeConstraintRegion(sampleTrajectory.size(), randomTrajectory.size(), randomBandwidth);
+        var constraintRegion = computeConstraintRegion(sampleSize, randomSize, randomBandwidth);
         var lowerBounds = constraintRegion.get(0);
         var upperBounds = constraintRegion.get(1);
 
-        if (isDtwPrinting()) {
-            System.out.println("Sample size: " + sampleTrajectory.size());
-            System.out.println("Random size: " + randomTrajectory.size());
-            System.out.println("Bandwidth: " + randomBandwidth);
-            System.out.println("lowerBounds: \n" + lowerBounds);
-            System.out.println("upperBounds: \n" + upperBounds);
+        if (LOG.isDebugEnabled()) {
+            LOG.debugf("Sample size: %d", sampleSize);
+            LOG.debugf("Random size: %d", randomSize);
+            LOG.debugf("Bandwidth: %s", randomBandwidth);
+            LOG.debugf("lowerBounds: %n%s", lowerBounds);
+            LOG.debugf("upperBounds: %n%s", upperBounds);
         }
 
-        double[][] distanceMatrix = buildDistanceMatrix(sampleTrajectory, randomTrajectory, constraintRegion);
-//        prettyPrintMatrix(distanceMatrix, ">>> Cumulative distance matrix:");
+        var region = ConstraintRegion.of(constraintRegion, randomSize);
+        var engine = new DtwEngine();
+        if (FAST_DTW_RADIUS >= 0) {
+            var fullRegion = FastDtw.fullRegion(sampleSize, randomSize);
+            LOG.infof("Approximate DTW: %s", new FastDtw(engine, FAST_DTW_RADIUS).distance(trajectories, sampleTrajectory, randomTrajectory));
+            LOG.infof("Exact DTW distance: %s", engine.distance(trajectories, sampleTrajectory, randomTrajectory, fullRegion));
+            return;
+        }
+        BandedMatrix cumulativeCostMatrix = cumulativeCostMatrixUnlessDistanceOnly(engine, trajectories, sampleTrajectory, randomTrajectory, region, DISTANCE_ONLY);
+        if (cumulativeCostMatrix == null) {
+            return;
+        }
+//        prettyPrintMatrix(cumulativeCostMatrix.getValues(), ">>> Cumulative distance matrix:");
 
-//        double[] slicedArray = Arrays.stream(distanceMatrix[0], 0, 16).toArray();
+        if (LOG.isDebugEnabled()) {
+            LOG.debugf("Row evaluator: %s", engine.getEvaluator());
+            LOG.debugf("DTW distance: %s", engine.distance(trajectories, sampleTrajectory, randomTrajectory, region));
+            LOG.debugf("5 nearest neighbours: %s", new SimilaritySearch(trajectories, randomBandwidth).search(sampleTrajectory, 5));
+        }
 
-        var indicesOfOptimalPath = warpingPath(
-                sampleTrajectory.size() - 1,
-                randomTrajectory.size() - 1,
-                distanceMatrix
+        var optimalPath = DtwEngine.warpingPath(
+                sampleSize - 1,
+                randomSize - 1,
+                cumulativeCostMatrix
         );
 
-        List<Integer> xIndices = new ArrayList<>();
-        List<Integer> yIndices = new ArrayList<>();
-        for (List<Integer> indexPair : indicesOfOptimalPath) {
-            xIndices.add(indexPair.get(0));
-            yIndices.add(indexPair.get(1));
+        // matplotlib4j only takes lists, so the path is boxed here, once, for plotting
+        List<Integer> xIndices = new ArrayList<>(optimalPath.getLength());
+        List<Integer> yIndices = new ArrayList<>(optimalPath.getLength());
+        for (int step = 0; step < optimalPath.getLength(); step++) {
+            xIndices.add(optimalPath.getRow(step));
+            yIndices.add(optimalPath.getColumn(step));
         }
 
         Plot plt = Plot.create();
@@ -64,14 +97,12 @@ public class BaseAlgorithm {
         plt.title("Optimal warping path");
 
         List<Double> distances = new ArrayList<>();
-        for (double[] rows : distanceMatrix) {
-            for (double number : rows) {
-                distances.add(number);
-            }
+        for (double number : cumulativeCostMatrix.getValues()) {
+            distances.add(number);
         }
 
-//        List<Double> x = NumpyUtils.linspace(0, sampleTrajectory.size(), 100);
-//        List<Double> y = NumpyUtils.linspace(0, randomTrajectory.size(), 100);
+//        List<Double> x = NumpyUtils.linspace(0, sampleSize, 100);
+//        List<Double> y = NumpyUtils.linspace(0, randomSize, 100);
 //        NumpyUtils.Grid<Double> grid = NumpyUtils.meshgrid(x, y);
 //        List<List<Double>> cCalced = grid.calcZ((xi, yj) -> Math.sqrt(xi * xi + yj * yj));
 //
@@ -79,89 +110,41 @@ public class BaseAlgorithm {
 
 //        plt.subplot(2, 1, 2);
 //        plt.hist().add(xIndices, yIndices, "o").label("Distance matrix weighted by greyscale");
-//        plt.xlim(-1, sampleTrajectory.size());
-//        plt.ylim(-1, randomTrajectory.size());
+//        plt.xlim(-1, sampleSize);
+//        plt.ylim(-1, randomSize);
 
 //        plt.show();
     }
 
-    private static List<List<Integer>> warpingPath(int xDimension, int yDimension, double[][] distanceMatrix) {
-        List<List<Integer>> indexPairs = new ArrayList<>();
-        List<Integer> iteratedIndexPair = new ArrayList<>();
-        indexPairs.add(List.of(xDimension, yDimension));
-        while (xDimension > 0 || yDimension > 0) {
-            iteratedIndexPair.clear();
-            if (xDimension == 0) {
-                iteratedIndexPair.add(0);
-                iteratedIndexPair.add(yDimension - 1);
-            } else if (yDimension == 0) {
-                iteratedIndexPair.add(xDimension - 1);
-                iteratedIndexPair.add(0);
-            } else {
-                double smallest = minimum(
-                        distanceMatrix[xDimension - 1][yDimension - 1],
-                        distanceMatrix[xDimension - 1][yDimension],
-                        distanceMatrix[xDimension][yDimension - 1]
-                );
-                if (smallest == distanceMatrix[xDimension - 1][yDimension - 1]) {
-                    iteratedIndexPair.add(xDimension - 1);
-                    iteratedIndexPair.add(yDimension - 1);
-                } else if (smallest == distanceMatrix[xDimension - 1][yDimension]) {
-                    iteratedIndexPair.add(xDimension - 1);
-                    iteratedIndexPair.add(yDimension);
-                } else {
-                    iteratedIndexPair.add(xDimension);
-                    iteratedIndexPair.add(yDimension - 1);
-                }
-            }
-            xDimension = iteratedIndexPair.get(0);
-            yDimension = iteratedIndexPair.get(1);
-            indexPairs.add(List.of(xDimension, yDimension));
-        }
-        Collections.reverse(indexPairs);
-        return indexPairs;
-    }
-
-    private static double[][] buildDistanceMatrix(
-            List<Point> queryTrajectory,
-            List<Point> compareTrajectory,
-            List<List<Integer>> constraintRegion) {
-        int rowSize = queryTrajectory.size();
-        int columnSize = compareTrajectory.size();
-        double[][] distanceMatrix = new double[rowSize][columnSize];
-
-        for (int currentRow = 0; currentRow < rowSize; currentRow++) {
-            for (int currentColumn = 0; currentColumn < columnSize; currentColumn++) {
-
-                boolean withinConstraintRegion = isWithinConstraintRegion(constraintRegion, currentRow, currentColumn);
-                if (withinConstraintRegion) {
-                    distanceMatrix[currentRow][currentColumn] = round(getDistance(
-                            queryTrajectory.get(currentRow),
-                            compareTrajectory.get(currentColumn)),
-                            4
-                    );
-                } else {
-                    distanceMatrix[currentRow][currentColumn] = Integer.MAX_VALUE;
-                }
-            }
+    /**
+     * @return the cumulative cost matrix to backtrack the warping path through, or null if distanceOnly, in which case
+     * only the distance is logged, computed with two rolling rows
+     */
+    static BandedMatrix cumulativeCostMatrixUnlessDistanceOnly(
+            DtwEngine engine, TrajectoryStore trajectories, int sampleTrajectory, int randomTrajectory, ConstraintRegion region, boolean distanceOnly) {
+        if (distanceOnly) {
+            LOG.infof("DTW distance: %s", engine.distance(trajectories, sampleTrajectory, randomTrajectory, region));
+            return null;
         }
-        return distanceMatrix;
+        return engine.cumulativeCostMatrix(trajectories, sampleTrajectory, randomTrajectory, region);
     }
 
-    private static boolean isWithinConstraintRegion(List<List<Integer>> constraintRegion, int row, int column) {
-        var lowerBound = constraintRegion.get(0).get(row);
-        var upperBound = constraintRegion.get(1).get(row);
-
-        return lowerBound <= column && column <= upperBound;
-    }
-
-    private static List<List<Point>> extractTrajectories(String[] runtimeParams) {
+    /**
+     * Expects either a CSV export and whether to skip its header, optionally followed by a path to write the
+     * binary format to, or a single binary file written that way earlier.
+     */
+    private static TrajectoryStore extractTrajectories(String[] runtimeParams) {
         String fileToRead = runtimeParams[0];
+        if (fileToRead.endsWith(BINARY_EXTENSION)) {
+            return MappedTrajectoryFile.open(FileUtility.buildFilePath(fileToRead)).asStore();
+        }
         boolean ignoreHeader = Boolean.parseBoolean(runtimeParams[1]);
 
-        var file = FileUtility.readFile(fileToRead, ignoreHeader);
-
-        return transformFileToTrajectories(file);
+        var trajectories = readTrajectoryStore(fileToRead, ignoreHeader);
+        if (runtimeParams.length > 2) {
+            MappedTrajectoryFile.write(trajectories, FileUtility.buildFilePath(runtimeParams[2]));
+        }
+        return trajectories;
     }
 
 }
@@ -0,0 +1,194 @@
+package dtw;
+
+import model.PreparedCoordinates;
+
+import static model.PreparedCoordinates.EARTH_RADIUS;
+
+/**
+ * Local cost between two fixes of a store, evaluated on the store's PreparedCoordinates so no cell converts
+ * degrees or recomputes cos(latitude), and nothing is allocated.
+ * Costs are computed a band row at a time, which keeps the virtual call out of the per-cell loop.
+ * <p>
+ * Memory: the first kernel of a kind to run on a store derives its columns onto the heap and the store keeps them,
+ * 24 bytes per fix for HAVERSINE and EQUIRECTANGULAR and 16 for SQUARED_EUCLIDEAN, 40 if both kinds are used. That
+ * holds for stores viewed from a MappedTrajectoryFile as well, whose fixes are otherwise read in place, so budget heap
+ * for it before running DTW on a large mapped file.
+ */
+public enum DistanceKernel {
+
+    /**
+     * Great-circle distance in kilometres by the haversine formula, identical to MathUtility.getDistance up to rounding.
+     */
+    HAVERSINE {
+        @Override
+        public double distance(PreparedCoordinates coordinates, int from, int to) {
+            double[] latitudes = coordinates.getLatitudeRadians();
+            double[] longitudes = coordinates.getLongitudeRadians();
+            double[] cosines = coordinates.getCosineLatitudes();
+            return haversine(latitudes[to] - latitudes[from], longitudes[to] - longitudes[from], cosines[from] * cosines[to]);
+        }
+
+        @Override
+        public void rowDistances(PreparedCoordinates coordinates, int from, int toStart, int count, double[] output, int outputOffset) {
+            double[] latitudes = coordinates.getLatitudeRadians();
+            double[] longitudes = coordinates.getLongitudeRadians();
+            double[] cosines = coordinates.getCosineLatitudes();
+            double fromLatitude = latitudes[from];
+            double fromLongitude = longitudes[from];
+            double fromCosine = cosines[from];
+            for (int k = 0; k < count; k++) {
+                int to = toStart + k;
+                output[outputOffset + k] = haversine(latitudes[to] - fromLatitude, longitudes[to] - fromLongitude, fromCosine * cosines[to]);
+            }
+        }
+
+        /**
+         * Both haversine terms only grow with the latitude and longitude gaps, and the box's largest |latitude| gives
+         * the smallest cosine, so the result never exceeds the distance to a fix in the box.
+         */
+        @Override
+        public double lowerBound(PreparedCoordinates coordinates, int point,
+                                 double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+            double smallestCosineInBox = Math.cos(Math.toRadians(Math.max(Math.abs(minLatitude), Math.abs(maxLatitude))));
+            return haversine(
+                    latitudeGap(coordinates, point, minLatitude, maxLatitude),
+                    longitudeGap(coordinates, point, minLongitude, maxLongitude),
+                    coordinates.getCosineLatitudes()[point] * smallestCosineInBox
+            );
+        }
+    },
+
+    /**
+     * Equirectangular approximation in kilometres, scaling the longitude gap by the mean of both cosines.
+     * Within a fraction of a percent of haversine for hops of a few kilometres, at the price of one square root.
+     */
+    EQUIRECTANGULAR {
+        @Override
+        public double distance(PreparedCoordinates coordinates, int from, int to) {
+            double[] latitudes = coordinates.getLatitudeRadians();
+            double[] longitudes = coordinates.getLongitudeRadians();
+            double[] cosines = coordinates.getCosineLatitudes();
+            return equirectangular(latitudes[to] - latitudes[from], longitudes[to] - longitudes[from], cosines[from] + cosines[to]);
+        }
+
+        @Override
+        public void rowDistances(PreparedCoordinates coordinates, int from, int toStart, int count, double[] output, int outputOffset) {
+            double[] latitudes = coordinates.getLatitudeRadians();
+            double[] longitudes = coordinates.getLongitudeRadians();
+            double[] cosines = coordinates.getCosineLatitudes();
+            double fromLatitude = latitudes[from];
+            double fromLongitude = longitudes[from];
+            double fromCosine = cosines[from];
+            for (int k = 0; k < count; k++) {
+                int to = toStart + k;
+                output[outputOffset + k] = equirectangular(latitudes[to] - fromLatitude, longitudes[to] - fromLongitude, fromCosine + cosines[to]);
+            }
+        }
+
+        @Override
+        public double lowerBound(PreparedCoordinates coordinates, int point,
+                                 double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+            double smallestCosineInBox = Math.cos(Math.toRadians(Math.max(Math.abs(minLatitude), Math.abs(maxLatitude))));
+            return equirectangular(
+                    latitudeGap(coordinates, point, minLatitude, maxLatitude),
+                    longitudeGap(coordinates, point, minLongitude, maxLongitude),
+                    coordinates.getCosineLatitudes()[point] + smallestCosineInBox
+            );
+        }
+    },
+
+    /**
+     * Squared Euclidean distance in square kilometres on the store's equirectangular projection.
+     * No square root or trigonometry at all, but the projection distorts away from the store's mean latitude and
+     * the costs are not comparable with the geodesic kernels.
+     */
+    SQUARED_EUCLIDEAN {
+        @Override
+        public double distance(PreparedCoordinates coordinates, int from, int to) {
+            double[] x = coordinates.getProjectedX();
+            double[] y = coordinates.getProjectedY();
+            double deltaX = x[to] - x[from];
+            double deltaY = y[to] - y[from];
+            return deltaX * deltaX + deltaY * deltaY;
+        }
+
+        @Override
+        public void rowDistances(PreparedCoordinates coordinates, int from, int toStart, int count, double[] output, int outputOffset) {
+            double[] x = coordinates.getProjectedX();
+            double[] y = coordinates.getProjectedY();
+            double fromX = x[from];
+            double fromY = y[from];
+            for (int k = 0; k < count; k++) {
+                double deltaX = x[toStart + k] - fromX;
+                double deltaY = y[toStart + k] - fromY;
+                output[outputOffset + k] = deltaX * deltaX + deltaY * deltaY;
+            }
+        }
+
+        /**
+         * The projection is monotone in both latitude and longitude, so the box maps onto a box and the squared gap
+         * to it is exact.
+         */
+        @Override
+        public double lowerBound(PreparedCoordinates coordinates, int point,
+                                 double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+            double scaleX = EARTH_RADIUS * coordinates.getReferenceCosine();
+            double deltaX = gap(coordinates.getProjectedX()[point], scaleX * Math.toRadians(minLongitude), scaleX * Math.toRadians(maxLongitude));
+            double deltaY = gap(coordinates.getProjectedY()[point], EARTH_RADIUS * Math.toRadians(minLatitude), EARTH_RADIUS * Math.toRadians(maxLatitude));
+            return deltaX * deltaX + deltaY * deltaY;
+        }
+    };
+
+    public abstract double distance(PreparedCoordinates coordinates, int from, int to);
+
+    /**
+     * Writes the cost of fix from against fixes toStart..toStart + count - 1 into output[outputOffset..].
+     */
+    public abstract void rowDistances(PreparedCoordinates coordinates, int from, int toStart, int count, double[] output, int outputOffset);
+
+    /**
+     * Lower bound of the cost between a fix and any fix inside a latitude/longitude bounding box given in degrees.
+     */
+    public abstract double lowerBound(PreparedCoordinates coordinates, int point,
+                                      double minLatitude, double maxLatitude, double minLongitude, double maxLongitude);
+
+    private static double haversine(double deltaLatitude, double deltaLongitude, double cosineProduct) {
+        double sineLatitude = Math.sin(deltaLatitude / 2);
+        double sineLongitude = Math.sin(deltaLongitude / 2);
+        double chordLengthMeasure = sineLatitude * sineLatitude + cosineProduct * sineLongitude * sineLongitude;
+        return 2 * EARTH_RADIUS * Math.asin(Math.sqrt(Math.min(1, chordLengthMeasure)));
+    }
+
+    private static double equirectangular(double deltaLatitude, double deltaLongitude, double cosineSum) {
+        if (deltaLongitude > Math.PI) {
+            deltaLongitude -= 2 * Math.PI;
+        } else if (deltaLongitude < -Math.PI) {
+            deltaLongitude += 2 * Math.PI;
+        }
+        double x = deltaLongitude * cosineSum / 2;
+        return EARTH_RADIUS * Math.sqrt(x * x + deltaLatitude * deltaLatitude);
+    }
+
+    private static double gap(double value, double min, double max) {
+        return value < min ? min - value : Math.max(0, value - max);
+    }
+
+    /**
+     * The gaps are taken in radians, so the box converts with the same Math.toRadians as the fixes it bounds and
+     * rounding cannot push a bound past the true cost.
+     */
+    private static double latitudeGap(PreparedCoordinates coordinates, int point, double minLatitude, double maxLatitude) {
+        return gap(coordinates.getLatitudeRadians()[point], Math.toRadians(minLatitude), Math.toRadians(maxLatitude));
+    }
+
+    /**
+     * Going the other way around the antimeridian is never shorter than a full turn minus the farthest box edge.
+     */
+    private static double longitudeGap(PreparedCoordinates coordinates, int point, double minLongitude, double maxLongitude) {
+        double longitude = coordinates.getLongitudeRadians()[point];
+        double min = Math.toRadians(minLongitude);
+        double max = Math.toRadians(maxLongitude);
+        double farthestLongitude = Math.max(Math.abs(longitude - min), Math.abs(longitude - max));
+        return Math.max(0, Math.min(gap(longitude, min, max), 2 * Math.PI - farthestLongitude));
+    }
+}
@@ -0,0 +1,253 @@
+package dtw;
+
+import lombok.Getter;
+import model.BandedMatrix;
+import model.ConstraintRegion;
+import model.DtwResult;
+import model.PreparedCoordinates;
+import model.TrajectoryStore;
+import model.WarpingPath;
+
+import static utility.Instrumentation.*;
+import static utility.MathUtility.*;
+
+/**
+ * Banded DTW over trajectories of a TrajectoryStore. Computes the cumulative recurrence
+ * D(i, j) = c(i, j) + min(D(i - 1, j - 1), D(i - 1, j), D(i, j - 1)) for the cells inside the constraint region only.
+ * The local cost c(i, j) comes from a DistanceKernel, haversine unless chosen otherwise, evaluated a band row at a
+ * time by a RowEvaluator.
+ * distance keeps two rolling rows and is all most callers need; only warping-path recovery stores the band, through
+ * cumulativeCostMatrix.
+ * An engine keeps its row buffers between calls, so reuse one instance per thread.
+ */
+public class DtwEngine {
+
+    private static final double UNREACHABLE = Double.POSITIVE_INFINITY;
+
+    @Getter
+    private final DistanceKernel kernel;
+    @Getter
+    private final RowEvaluator evaluator;
+    private double[] previousRow = new double[0];
+    private double[] currentRow = new double[0];
+    private double[] costRow = new double[0];
+
+    public DtwEngine() {
+        this(DistanceKernel.HAVERSINE);
+    }
+
+    public DtwEngine(DistanceKernel kernel) {
+        this(kernel, RowEvaluator.DEFAULT);
+    }
+
+    public DtwEngine(DistanceKernel kernel, RowEvaluator evaluator) {
+        this.kernel = kernel;
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * Computes the DTW distance with two rolling rows, i.e. in O(band width) memory.
+     * @return the cumulative cost of the optimal warping path, or infinity if the band does not connect both corners
+     */
+    public double distance(TrajectoryStore store, int queryTrajectory, int candidateTrajectory, ConstraintRegion region) {
+        ensureCapacity(region.getMaxWidth());
+        int queryStart = store.getStart(queryTrajectory);
+        int candidateStart = store.getStart(candidateTrajectory);
+        var coordinates = store.getPreparedCoordinates();
+
+        double[] previous = previousRow;
+        double[] current = currentRow;
+        int previousLower = 0;
+        int previousUpper = -1;
+        for (int row = 0; row < region.getRowSize(); row++) {
+            int lower = region.getLowerBound(row);
+            fillRow(coordinates, queryStart + row, candidateStart, row, region, previous, -previousLower, previousLower, previousUpper, current, -lower);
+
+            double[] swap = previous;
+            previous = current;
+            current = swap;
+            previousLower = lower;
+            previousUpper = region.getUpperBound(row);
+        }
+        recordCellsEvaluated(region.getArea());
+
+        int lastColumn = region.getColumnSize() - 1;
+        if (previousUpper != lastColumn) {
+            return UNREACHABLE;
+        }
+        return previous[lastColumn - previousLower];
+    }
+
+    /**
+     * Early-abandoning variant of distance. Every cell of a warping path through row i is at least the minimum of
+     * row i, so the computation stops with exceeded set as soon as a whole band row costs more than the cutoff.
+     * @param cutoff the best-so-far distance, e.g. the current k-th nearest neighbour
+     */
+    public DtwResult distance(TrajectoryStore store, int queryTrajectory, int candidateTrajectory, ConstraintRegion region, double cutoff) {
+        ensureCapacity(region.getMaxWidth());
+        int queryStart = store.getStart(queryTrajectory);
+        int candidateStart = store.getStart(candidateTrajectory);
+        var coordinates = store.getPreparedCoordinates();
+        long cellsInBand = region.getArea();
+
+        double[] previous = previousRow;
+        double[] current = currentRow;
+        int previousLower = 0;
+        int previousUpper = -1;
+        long cellsEvaluated = 0;
+        for (int row = 0; row < region.getRowSize(); row++) {
+            int lower = region.getLowerBound(row);
+            double rowMinimum = fillRow(coordinates, queryStart + row, candidateStart, row, region, previous, -previousLower, previousLower, previousUpper, current, -lower);
+            cellsEvaluated += region.getWidth(row);
+            if (rowMinimum > cutoff) {
+                recordCellsEvaluated(cellsEvaluated);
+                return new DtwResult(UNREACHABLE, true, cellsEvaluated, cellsInBand);
+            }
+
+            double[] swap = previous;
+            previous = current;
+            current = swap;
+            previousLower = lower;
+            previousUpper = region.getUpperBound(row);
+        }
+
+        recordCellsEvaluated(cellsEvaluated);
+
+        int lastColumn = region.getColumnSize() - 1;
+        double distance = previousUpper == lastColumn ? previous[lastColumn - previousLower] : UNREACHABLE;
+        return new DtwResult(distance, distance > cutoff, cellsEvaluated, cellsInBand);
+    }
+
+    /**
+     * Computes the cumulative cost of every in-band cell, as needed for warping-path recovery.
+     * Only the band is stored, so memory is O(band area).
+     */
+    public BandedMatrix cumulativeCostMatrix(TrajectoryStore store, int queryTrajectory, int candidateTrajectory, ConstraintRegion region) {
+        int queryStart = store.getStart(queryTrajectory);
+        int candidateStart = store.getStart(candidateTrajectory);
+        var coordinates = store.getPreparedCoordinates();
+
+        ensureCapacity(region.getMaxWidth());
+        var matrix = new BandedMatrix(region);
+        double[] values = matrix.getValues();
+        int[] rowOffsets = matrix.getRowOffsets();
+        int previousBase = 0;
+        int previousLower = 0;
+        int previousUpper = -1;
+        for (int row = 0; row < region.getRowSize(); row++) {
+            int lower = region.getLowerBound(row);
+            int base = rowOffsets[row] - lower;
+            fillRow(coordinates, queryStart + row, candidateStart, row, region, values, previousBase, previousLower, previousUpper, values, base);
+
+            previousBase = base;
+            previousLower = lower;
+            previousUpper = region.getUpperBound(row);
+        }
+        recordCellsEvaluated(region.getArea());
+        return matrix;
+    }
+
+    /**
+     * Computes the cumulative cost matrix and backtracks the optimal warping path through it. Callers that only need
+     * the distance should use distance, which stores neither.
+     */
+    public WarpingPath warpingPath(TrajectoryStore store, int queryTrajectory, int candidateTrajectory, ConstraintRegion region) {
+        var cumulativeCostMatrix = cumulativeCostMatrix(store, queryTrajectory, candidateTrajectory, region);
+        return warpingPath(region.getRowSize() - 1, region.getColumnSize() - 1, cumulativeCostMatrix);
+    }
+
+    /**
+     * Backtracks the optimal warping path from cell (xDimension, yDimension) of a cumulative cost matrix to (0, 0).
+     * Every step decrements the row, the column or both, so the path has at most xDimension + yDimension + 1 cells,
+     * and the arrays are allocated for that up front.
+     */
+    public static WarpingPath warpingPath(int xDimension, int yDimension, BandedMatrix cumulativeCostMatrix) {
+        int capacity = xDimension + yDimension + 1;
+        int[] rows = new int[capacity];
+        int[] columns = new int[capacity];
+        int step = capacity - 1;
+        rows[step] = xDimension;
+        columns[step] = yDimension;
+        while (xDimension > 0 || yDimension > 0) {
+            if (xDimension == 0) {
+                yDimension--;
+            } else if (yDimension == 0) {
+                xDimension--;
+            } else {
+                double diagonal = cumulativeCostMatrix.get(xDimension - 1, yDimension - 1);
+                double vertical = cumulativeCostMatrix.get(xDimension - 1, yDimension);
+                double horizontal = cumulativeCostMatrix.get(xDimension, yDimension - 1);
+                double smallest = minimum(diagonal, vertical, horizontal);
+                if (smallest == diagonal) {
+                    xDimension--;
+                    yDimension--;
+                } else if (smallest == vertical) {
+                    xDimension--;
+                } else {
+                    yDimension--;
+                }
+            }
+            step--;
+            rows[step] = xDimension;
+            columns[step] = yDimension;
+        }
+        return new WarpingPath(rows, columns, step);
+    }
+
+    /**
+     * Evaluates one band row. Cell (row, column) lives at current[currentBase + column], and the previous row's
+     * cell (row - 1, column) at previous[previousBase + column], which lets rolling rows and the flat band share this loop.
+     * The row's local costs are computed first into costRow, in one evaluator call.
+     * @return the smallest cumulative cost in the row
+     */
+    private double fillRow(
+            PreparedCoordinates coordinates,
+            int queryIndex,
+            int candidateStart,
+            int row,
+            ConstraintRegion region,
+            double[] previous,
+            int previousBase,
+            int previousLower,
+            int previousUpper,
+            double[] current,
+            int currentBase) {
+        int lower = region.getLowerBound(row);
+        int upper = region.getUpperBound(row);
+        if (upper < lower) {
+            return UNREACHABLE;
+        }
+        evaluator.rowDistances(kernel, coordinates, queryIndex, candidateStart + lower, upper - lower + 1, costRow, 0);
+
+        double rowMinimum = UNREACHABLE;
+        for (int column = lower; column <= upper; column++) {
+            double cheapestPredecessor;
+            if (row == 0 && column == 0) {
+                cheapestPredecessor = 0;
+            } else {
+                double diagonal = previousLower <= column - 1 && column - 1 <= previousUpper
+                        ? previous[previousBase + column - 1]
+                        : UNREACHABLE;
+                double vertical = previousLower <= column && column <= previousUpper
+                        ? previous[previousBase + column]
+                        : UNREACHABLE;
+                double horizontal = column > lower
+                        ? current[currentBase + column - 1]
+                        : UNREACHABLE;
+                cheapestPredecessor = minimum(diagonal, vertical, horizontal);
+            }
+            double cumulativeCost = cheapestPredecessor + costRow[column - lower];
+            current[currentBase + column] = cumulativeCost;
+            rowMinimum = Math.min(rowMinimum, cumulativeCost);
+        }
+        return rowMinimum;
+    }
+
+    private void ensureCapacity(int width) {
+        if (previousRow.length < width) {
+            previousRow = new double[width];
+            currentRow = new double[width];
+            costRow = new double[width];
+        }
+    }
+}
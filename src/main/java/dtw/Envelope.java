@@ -0,0 +1,81 @@
+package dtw;
+
+import lombok.Getter;
+import model.ConstraintRegion;
+import model.TrajectoryStore;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * Bounding boxes of a candidate trajectory over the band window of every query row, i.e. row i holds the
+ * latitude and longitude extremes of the candidate's fixes in columns region.getLowerBound(i)..region.getUpperBound(i).
+ * The arrays are reused between builds, so keep one envelope per thread.
+ */
+@Getter
+public class Envelope {
+
+    private double[] minLatitudes = new double[0];
+    private double[] maxLatitudes = new double[0];
+    private double[] minLongitudes = new double[0];
+    private double[] maxLongitudes = new double[0];
+    private int rowSize;
+
+    private int[] window = new int[0];
+
+    /**
+     * Builds the envelope with monotone sliding-window deques. The band's bounds never decrease from one row to
+     * the next, so every candidate fix enters and leaves each deque at most once and the build is O(n + m).
+     */
+    public void build(TrajectoryStore store, int candidateTrajectory, ConstraintRegion region) {
+        ensureCapacity(region.getRowSize(), region.getColumnSize());
+        rowSize = region.getRowSize();
+
+        int candidateStart = store.getStart(candidateTrajectory);
+        var latitudes = store.getLatitudes();
+        var longitudes = store.getLongitudes();
+        slidingExtreme(latitudes, candidateStart, region, minLatitudes, false);
+        slidingExtreme(latitudes, candidateStart, region, maxLatitudes, true);
+        slidingExtreme(longitudes, candidateStart, region, minLongitudes, false);
+        slidingExtreme(longitudes, candidateStart, region, maxLongitudes, true);
+    }
+
+    private void slidingExtreme(DoubleBuffer column, int candidateStart, ConstraintRegion region, double[] output, boolean maximum) {
+        int head = 0;
+        int tail = 0;
+        int nextColumn = 0;
+        for (int row = 0; row < region.getRowSize(); row++) {
+            int lower = region.getLowerBound(row);
+            int upper = region.getUpperBound(row);
+            if (upper < lower) {
+                output[row] = maximum ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+                continue;
+            }
+
+            for (nextColumn = Math.max(nextColumn, lower); nextColumn <= upper; nextColumn++) {
+                double value = column.get(candidateStart + nextColumn);
+                while (tail > head && (maximum
+                        ? column.get(candidateStart + window[tail - 1]) <= value
+                        : column.get(candidateStart + window[tail - 1]) >= value)) {
+                    tail--;
+                }
+                window[tail++] = nextColumn;
+            }
+            while (window[head] < lower) {
+                head++;
+            }
+            output[row] = column.get(candidateStart + window[head]);
+        }
+    }
+
+    private void ensureCapacity(int rows, int columns) {
+        if (minLatitudes.length < rows) {
+            minLatitudes = new double[rows];
+            maxLatitudes = new double[rows];
+            minLongitudes = new double[rows];
+            maxLongitudes = new double[rows];
+        }
+        if (window.length < columns) {
+            window = new int[columns];
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package dtw;
+
+import lombok.Getter;
+import model.ConstraintRegion;
+import model.FastDtwResult;
+import model.TrajectoryStore;
+import model.WarpingPath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Approximate DTW after Salvador and Chan's FastDTW. Both trajectories are coarsened recursively by averaging
+ * neighbouring fixes until either has at most radius + 2 fixes, DTW is solved exactly at that resolution, and the
+ * warping path is then projected up one resolution at a time. At every finer resolution only the cells the projected
+ * path covers, widened by radius cells in each direction, are evaluated, so time and memory grow linearly with the
+ * trajectory lengths instead of with their product. The finest resolution keeps two rolling rows, as distance does.
+ * Coarsening averages latitudes and longitudes, which is only meaningful away from the antimeridian.
+ * Reuses the engine's row buffers, so keep one instance per thread, like the engine.
+ */
+public class FastDtw {
+
+    private final DtwEngine engine;
+    @Getter
+    private final int radius;
+
+    public FastDtw(int radius) {
+        this(new DtwEngine(), radius);
+    }
+
+    public FastDtw(DtwEngine engine, int radius) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("radius must not be negative");
+        }
+        this.engine = engine;
+        this.radius = radius;
+    }
+
+    public FastDtwResult distance(TrajectoryStore store, int queryTrajectory, int candidateTrajectory) {
+        int minimumSize = radius + 2;
+        // Level 0 is the store itself; every coarser level holds just the halved query and candidate, as 0 and 1
+        List<TrajectoryStore> levels = new ArrayList<>();
+        levels.add(store);
+        var coarsest = store;
+        int query = queryTrajectory;
+        int candidate = candidateTrajectory;
+        while (coarsest.getLength(query) > minimumSize && coarsest.getLength(candidate) > minimumSize) {
+            coarsest = coarsen(coarsest, query, candidate);
+            levels.add(coarsest);
+            query = 0;
+            candidate = 1;
+        }
+
+        var region = fullRegion(coarsest.getLength(query), coarsest.getLength(candidate));
+        long cellsEvaluated = 0;
+        for (int level = levels.size() - 1; level > 0; level--) {
+            var path = engine.warpingPath(levels.get(level), 0, 1, region);
+            cellsEvaluated += region.getArea();
+
+            var finer = levels.get(level - 1);
+            int finerQuery = level == 1 ? queryTrajectory : 0;
+            int finerCandidate = level == 1 ? candidateTrajectory : 1;
+            region = projectWindow(path, finer.getLength(finerQuery), finer.getLength(finerCandidate), radius);
+        }
+        double distance = engine.distance(store, queryTrajectory, candidateTrajectory, region);
+        cellsEvaluated += region.getArea();
+        return new FastDtwResult(distance, radius, levels.size(), cellsEvaluated);
+    }
+
+    /**
+     * @return a store holding the query as trajectory 0 and the candidate as trajectory 1, each at half resolution.
+     * Every fix averages two neighbouring fixes; an odd last fix is kept as it is
+     */
+    static TrajectoryStore coarsen(TrajectoryStore store, int queryTrajectory, int candidateTrajectory) {
+        int querySize = (store.getLength(queryTrajectory) + 1) / 2;
+        int candidateSize = (store.getLength(candidateTrajectory) + 1) / 2;
+        int pointCount = querySize + candidateSize;
+        double[] latitudes = new double[pointCount];
+        double[] longitudes = new double[pointCount];
+        long[] timestamps = new long[pointCount];
+
+        halve(store, queryTrajectory, latitudes, longitudes, timestamps, 0);
+        halve(store, candidateTrajectory, latitudes, longitudes, timestamps, querySize);
+        return new TrajectoryStore(latitudes, longitudes, timestamps, new int[]{0, 1}, new int[]{0, querySize, pointCount});
+    }
+
+    private static void halve(TrajectoryStore store, int trajectory, double[] latitudes, double[] longitudes, long[] timestamps, int to) {
+        int from = store.getStart(trajectory);
+        int end = store.getEnd(trajectory);
+        for (int index = from; index < end; index += 2, to++) {
+            int next = Math.min(index + 1, end - 1);
+            latitudes[to] = (store.getLatitude(index) + store.getLatitude(next)) / 2;
+            longitudes[to] = (store.getLongitude(index) + store.getLongitude(next)) / 2;
+            timestamps[to] = (store.getTimestamp(index) + store.getTimestamp(next)) / 2;
+        }
+    }
+
+    /**
+     * Projects a warping path onto the resolution twice as fine, where coarse cell (i, j) covers the cells
+     * (2i..2i + 1, 2j..2j + 1), and widens the projection by radius cells in every direction.
+     * As the path visits every coarse row, every fine row gets a non-empty, contiguous range of columns.
+     */
+    static ConstraintRegion projectWindow(WarpingPath path, int rowSize, int columnSize, int radius) {
+        int[] projectedLower = new int[rowSize];
+        int[] projectedUpper = new int[rowSize];
+        Arrays.fill(projectedLower, Integer.MAX_VALUE);
+        Arrays.fill(projectedUpper, -1);
+        for (int step = 0; step < path.getLength(); step++) {
+            int lower = 2 * path.getColumn(step);
+            int upper = Math.min(lower + 1, columnSize - 1);
+            int firstRow = 2 * path.getRow(step);
+            for (int row = firstRow; row <= Math.min(firstRow + 1, rowSize - 1); row++) {
+                projectedLower[row] = Math.min(projectedLower[row], lower);
+                projectedUpper[row] = Math.max(projectedUpper[row], upper);
+            }
+        }
+
+        int[] lowerBounds = new int[rowSize];
+        int[] upperBounds = new int[rowSize];
+        for (int row = 0; row < rowSize; row++) {
+            int lower = Integer.MAX_VALUE;
+            int upper = -1;
+            for (int neighbour = Math.max(0, row - radius); neighbour <= Math.min(rowSize - 1, row + radius); neighbour++) {
+                lower = Math.min(lower, projectedLower[neighbour]);
+                upper = Math.max(upper, projectedUpper[neighbour]);
+            }
+            lowerBounds[row] = Math.max(0, lower - radius);
+            upperBounds[row] = Math.min(columnSize - 1, upper + radius);
+        }
+        return new ConstraintRegion(lowerBounds, upperBounds, columnSize);
+    }
+
+    /**
+     * @return the unconstrained region, every column of every row
+     */
+    static ConstraintRegion fullRegion(int rowSize, int columnSize) {
+        int[] lowerBounds = new int[rowSize];
+        int[] upperBounds = new int[rowSize];
+        Arrays.fill(upperBounds, columnSize - 1);
+        return new ConstraintRegion(lowerBounds, upperBounds, columnSize);
+    }
+}
@@ -0,0 +1,115 @@
+package dtw;
+
+import model.SymmetricMatrix;
+import model.TrajectoryStore;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static utility.MathUtility.*;
+
+/**
+ * All-pairs DTW over the trajectories of a store. The upper triangle is cut into square tiles of trajectory pairs,
+ * and the tiles are split recursively over a fork-join pool so idle workers can steal the remaining halves.
+ * Every worker thread keeps its own DtwEngine, so the DP rows are allocated once per thread rather than per pair.
+ * Entry (i, j) with i < j is the banded DTW distance with trajectory i as the query and trajectory j as the candidate.
+ */
+public class PairwiseDistances {
+
+    private static final int DEFAULT_TILE_SIZE = 16;
+
+    private final TrajectoryStore store;
+    private final double bandwidth;
+    private final int tileSize;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<DtwEngine> engines;
+
+    public PairwiseDistances(TrajectoryStore store, double bandwidth) {
+        this(store, bandwidth, DistanceKernel.HAVERSINE, DEFAULT_TILE_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param kernel the local cost every engine uses
+     * @param tileSize the number of trajectories along each side of a tile
+     * @param pool the pool to run the tiles on, e.g. new ForkJoinPool(32) on a dedicated batch node
+     */
+    public PairwiseDistances(TrajectoryStore store, double bandwidth, DistanceKernel kernel, int tileSize, ForkJoinPool pool) {
+        if (tileSize < 1) {
+            throw new IllegalArgumentException("tile size must be at least 1");
+        }
+        this.store = store;
+        this.bandwidth = bandwidth;
+        this.tileSize = tileSize;
+        this.pool = pool;
+        this.engines = ThreadLocal.withInitial(() -> new DtwEngine(kernel));
+    }
+
+    public SymmetricMatrix compute() {
+        int trajectoryCount = store.getTrajectoryCount();
+        var matrix = new SymmetricMatrix(trajectoryCount);
+
+        int tilesPerSide = (trajectoryCount + tileSize - 1) / tileSize;
+        int[] tileRows = new int[tilesPerSide * (tilesPerSide + 1) / 2];
+        int[] tileColumns = new int[tileRows.length];
+        int tile = 0;
+        for (int tileRow = 0; tileRow < tilesPerSide; tileRow++) {
+            for (int tileColumn = tileRow; tileColumn < tilesPerSide; tileColumn++) {
+                tileRows[tile] = tileRow;
+                tileColumns[tile] = tileColumn;
+                tile++;
+            }
+        }
+
+        if (tileRows.length > 0) {
+            pool.invoke(new TileTask(matrix, tileRows, tileColumns, 0, tileRows.length));
+        }
+        return matrix;
+    }
+
+    private void computeTile(SymmetricMatrix matrix, int tileRow, int tileColumn) {
+        DtwEngine engine = engines.get();
+        int rowEnd = Math.min((tileRow + 1) * tileSize, store.getTrajectoryCount());
+        int columnEnd = Math.min((tileColumn + 1) * tileSize, store.getTrajectoryCount());
+
+        for (int query = tileRow * tileSize; query < rowEnd; query++) {
+            int querySize = store.getLength(query);
+            for (int candidate = Math.max(tileColumn * tileSize, query + 1); candidate < columnEnd; candidate++) {
+                int candidateSize = store.getLength(candidate);
+                double distance = querySize == 0 || candidateSize == 0
+                        ? Double.POSITIVE_INFINITY
+                        : engine.distance(store, query, candidate, computeConstraintRegionBounds(querySize, candidateSize, bandwidth));
+                matrix.set(query, candidate, distance);
+            }
+        }
+    }
+
+    private class TileTask extends RecursiveAction {
+
+        private final SymmetricMatrix matrix;
+        private final int[] tileRows;
+        private final int[] tileColumns;
+        private final int from;
+        private final int to;
+
+        TileTask(SymmetricMatrix matrix, int[] tileRows, int[] tileColumns, int from, int to) {
+            this.matrix = matrix;
+            this.tileRows = tileRows;
+            this.tileColumns = tileColumns;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                computeTile(matrix, tileRows[from], tileColumns[from]);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(
+                    new TileTask(matrix, tileRows, tileColumns, from, middle),
+                    new TileTask(matrix, tileRows, tileColumns, middle, to)
+            );
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package dtw;
+
+import model.PreparedCoordinates;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * How DtwEngine computes the local costs of a band row: plain loops, or SIMD lanes through jdk.incubator.vector.
+ * DEFAULT is VECTOR whenever the JVM was started with --add-modules jdk.incubator.vector and has more than one
+ * double lane, since DtwBenchmark.distance runs haversine DTW about three times faster that way, and SCALAR otherwise.
+ * -Ddtw.rowEvaluator=scalar or =vector overrides the choice.
+ */
+public enum RowEvaluator {
+
+    SCALAR {
+        @Override
+        public void rowDistances(DistanceKernel kernel, PreparedCoordinates coordinates, int from, int toStart, int count,
+                                 double[] output, int outputOffset) {
+            kernel.rowDistances(coordinates, from, toStart, count, output, outputOffset);
+        }
+    },
+
+    VECTOR {
+        @Override
+        public void rowDistances(DistanceKernel kernel, PreparedCoordinates coordinates, int from, int toStart, int count,
+                                 double[] output, int outputOffset) {
+            VectorRowDistances.rowDistances(kernel, coordinates, from, toStart, count, output, outputOffset);
+        }
+    };
+
+    public static final RowEvaluator DEFAULT = select(System.getProperty("dtw.rowEvaluator"));
+
+    public abstract void rowDistances(DistanceKernel kernel, PreparedCoordinates coordinates, int from, int toStart, int count,
+                                      double[] output, int outputOffset);
+
+    /**
+     * @param requested the value of -Ddtw.rowEvaluator in any case, or null to pick the fastest available
+     */
+    static RowEvaluator select(String requested) {
+        if (requested == null) {
+            return isVectorAvailable() ? VECTOR : SCALAR;
+        }
+        RowEvaluator evaluator;
+        try {
+            evaluator = valueOf(requested.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("dtw.rowEvaluator was " + requested + ", expected one of "
+                    + Arrays.toString(values()).toLowerCase(Locale.ROOT), e);
+        }
+        if (evaluator == VECTOR && !isVectorAvailable()) {
+            throw new IllegalStateException("the vector row evaluator needs --add-modules jdk.incubator.vector");
+        }
+        return evaluator;
+    }
+
+    static boolean isVectorAvailable() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+        try {
+            return VectorRowDistances.laneCount() > 1;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+}
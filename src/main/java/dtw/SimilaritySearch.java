@@ -0,0 +1,196 @@
+package dtw;
+
+import model.BoundedMaxHeap;
+import model.PreparedCoordinates;
+import model.SearchResult;
+import model.TrajectoryStore;
+
+import java.util.Arrays;
+
+import static utility.Instrumentation.*;
+import static utility.MathUtility.*;
+
+/**
+ * k-NN search over the trajectories of a store under banded DTW. Candidates pass a cascade of increasingly
+ * expensive lower bounds, and only the survivors get an early-abandoning DTW against the current k-th best distance:
+ * <ol>
+ *     <li>LB_Kim: the path always matches both first fixes and both last fixes, O(1).</li>
+ *     <li>LB_Keogh: the path visits every query row inside the band, so each query fix costs at least its distance
+ *     to the candidate's envelope over that row's window, O(n + m).</li>
+ *     <li>DTW, abandoned as soon as a band row exceeds the k-th best distance.</li>
+ * </ol>
+ * A search instance reuses its buffers, so keep one per thread.
+ */
+public class SimilaritySearch {
+
+    private final TrajectoryStore store;
+    private final PreparedCoordinates coordinates;
+    private final double bandwidth;
+    private final DistanceKernel kernel;
+    private final DtwEngine engine;
+    private final Envelope envelope = new Envelope();
+
+    /**
+     * @param bandwidth the relative band width passed to computeConstraintRegion
+     */
+    public SimilaritySearch(TrajectoryStore store, double bandwidth) {
+        this(store, bandwidth, DistanceKernel.HAVERSINE);
+    }
+
+    /**
+     * @param kernel the local cost of DTW, which also provides the matching lower bounds
+     */
+    public SimilaritySearch(TrajectoryStore store, double bandwidth, DistanceKernel kernel) {
+        this(store, bandwidth, new DtwEngine(kernel));
+    }
+
+    /**
+     * Searches with an existing engine and its kernel, so a thread that keeps one engine per kernel reuses its warm
+     * row buffers instead of growing new ones per search.
+     */
+    public SimilaritySearch(TrajectoryStore store, double bandwidth, DtwEngine engine) {
+        this.store = store;
+        this.coordinates = store.getPreparedCoordinates();
+        this.bandwidth = bandwidth;
+        this.kernel = engine.getKernel();
+        this.engine = engine;
+    }
+
+    public SearchResult nearestNeighbour(int queryTrajectory) {
+        return search(queryTrajectory, 1);
+    }
+
+    /**
+     * Finds the k trajectories closest to the query, the query itself excluded.
+     * @param queryTrajectory the trajectory index in the store, see TrajectoryStore.indexOf for uniqueIds
+     */
+    public SearchResult search(int queryTrajectory, int nearestNeighbours) {
+        long started = System.nanoTime();
+        int querySize = store.getLength(queryTrajectory);
+        int trajectoryCount = store.getTrajectoryCount();
+
+        double[] kimBounds = new double[trajectoryCount];
+        for (int candidate = 0; candidate < trajectoryCount; candidate++) {
+            kimBounds[candidate] = candidate == queryTrajectory || store.getLength(candidate) == 0
+                    ? Double.POSITIVE_INFINITY
+                    : lowerBoundKim(queryTrajectory, candidate);
+        }
+        // Visiting the most promising candidates first tightens the k-th best distance early
+        long[] order = orderByBound(kimBounds);
+
+        var nearest = new BoundedMaxHeap(nearestNeighbours);
+        int prunedByKim = 0;
+        int prunedByKeogh = 0;
+        int abandonedDtw = 0;
+        int completedDtw = 0;
+        long cellsEvaluated = 0;
+        for (int position = 0; position < order.length; position++) {
+            int candidate = (int) order[position];
+            double threshold = nearest.getThreshold();
+            if (sortKeyBound(order[position]) > threshold) {
+                prunedByKim += order.length - position;
+                break;
+            }
+            if (kimBounds[candidate] > threshold) {
+                prunedByKim++;
+                continue;
+            }
+
+            int candidateSize = store.getLength(candidate);
+            var region = computeConstraintRegionBounds(querySize, candidateSize, bandwidth);
+            envelope.build(store, candidate, region);
+            if (lowerBoundKeogh(queryTrajectory, threshold) > threshold) {
+                prunedByKeogh++;
+                continue;
+            }
+
+            var result = engine.distance(store, queryTrajectory, candidate, region, threshold);
+            cellsEvaluated += result.getCellsEvaluated();
+            if (result.isExceeded()) {
+                abandonedDtw++;
+            } else {
+                completedDtw++;
+                nearest.offer(result.getDistance(), candidate);
+            }
+        }
+
+        double[] distances = new double[nearest.getSize()];
+        int[] uniqueIds = new int[nearest.getSize()];
+        nearest.toSortedArrays(distances, uniqueIds);
+        for (int i = 0; i < uniqueIds.length; i++) {
+            uniqueIds[i] = store.getUniqueId(uniqueIds[i]);
+        }
+        recordCascadePruning(prunedByKim, prunedByKeogh, abandonedDtw);
+        recordQueryLatency(SIMILARITY_SEARCH, started);
+        return new SearchResult(uniqueIds, distances, order.length, prunedByKim, prunedByKeogh, abandonedDtw, completedDtw, cellsEvaluated);
+    }
+
+    /**
+     * Packs each finite bound, rounded down to a float, above its candidate index so a primitive sort orders the
+     * candidates by bound without boxing. The rounded bound is still a lower bound, and it never decreases along the
+     * sorted keys, so once it exceeds the threshold every remaining candidate can be pruned.
+     */
+    static long[] orderByBound(double[] bounds) {
+        long[] keys = new long[bounds.length];
+        int count = 0;
+        for (int candidate = 0; candidate < bounds.length; candidate++) {
+            double bound = bounds[candidate];
+            if (bound != Double.POSITIVE_INFINITY) {
+                float roundedDown = (float) bound;
+                if (roundedDown > bound) {
+                    roundedDown = Math.nextDown(roundedDown);
+                }
+                // Non-negative floats order the same way as their bit patterns
+                keys[count++] = ((long) Float.floatToRawIntBits(roundedDown) << 32) | candidate;
+            }
+        }
+        keys = Arrays.copyOf(keys, count);
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    static float sortKeyBound(long key) {
+        return Float.intBitsToFloat((int) (key >>> 32));
+    }
+
+    private double lowerBoundKim(int queryTrajectory, int candidate) {
+        int queryFirst = store.getStart(queryTrajectory);
+        int queryLast = store.getEnd(queryTrajectory) - 1;
+        int candidateFirst = store.getStart(candidate);
+        int candidateLast = store.getEnd(candidate) - 1;
+
+        double bound = kernel.distance(coordinates, queryFirst, candidateFirst);
+        if (queryFirst != queryLast || candidateFirst != candidateLast) {
+            bound += kernel.distance(coordinates, queryLast, candidateLast);
+        }
+        return bound;
+    }
+
+    /**
+     * Sums the distance of every query fix to the envelope built for the current candidate, stopping once the sum
+     * passes the threshold.
+     */
+    private double lowerBoundKeogh(int queryTrajectory, double threshold) {
+        int queryStart = store.getStart(queryTrajectory);
+        double[] minLatitudes = envelope.getMinLatitudes();
+        double[] maxLatitudes = envelope.getMaxLatitudes();
+        double[] minLongitudes = envelope.getMinLongitudes();
+        double[] maxLongitudes = envelope.getMaxLongitudes();
+
+        double bound = 0;
+        for (int row = 0; row < envelope.getRowSize() && bound <= threshold; row++) {
+            if (minLatitudes[row] > maxLatitudes[row]) {
+                return Double.POSITIVE_INFINITY;
+            }
+            bound += kernel.lowerBound(
+                    coordinates,
+                    queryStart + row,
+                    minLatitudes[row],
+                    maxLatitudes[row],
+                    minLongitudes[row],
+                    maxLongitudes[row]
+            );
+        }
+        return bound;
+    }
+}
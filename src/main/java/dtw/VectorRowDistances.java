@@ -0,0 +1,105 @@
+package dtw;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import model.PreparedCoordinates;
+
+import static model.PreparedCoordinates.EARTH_RADIUS;
+
+/**
+ * Band-row costs with jdk.incubator.vector, one query fix against SPECIES.length() candidate fixes per step.
+ * The lanes follow the scalar formulas of DistanceKernel, and the tail that does not fill a vector is handed to the
+ * scalar kernel. Only referenced from RowEvaluator.VECTOR, so the class is never loaded without the incubator module.
+ */
+final class VectorRowDistances {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private VectorRowDistances() {
+    }
+
+    static int laneCount() {
+        return SPECIES.length();
+    }
+
+    static void rowDistances(DistanceKernel kernel, PreparedCoordinates coordinates, int from, int toStart, int count,
+                             double[] output, int outputOffset) {
+        int vectorized = switch (kernel) {
+            case HAVERSINE -> haversine(coordinates, from, toStart, count, output, outputOffset);
+            case EQUIRECTANGULAR -> equirectangular(coordinates, from, toStart, count, output, outputOffset);
+            case SQUARED_EUCLIDEAN -> squaredEuclidean(coordinates, from, toStart, count, output, outputOffset);
+        };
+        if (vectorized < count) {
+            kernel.rowDistances(coordinates, from, toStart + vectorized, count - vectorized, output, outputOffset + vectorized);
+        }
+    }
+
+    /**
+     * @return the number of costs written, a multiple of the lane count
+     */
+    private static int haversine(PreparedCoordinates coordinates, int from, int toStart, int count, double[] output, int outputOffset) {
+        double[] latitudes = coordinates.getLatitudeRadians();
+        double[] longitudes = coordinates.getLongitudeRadians();
+        double[] cosines = coordinates.getCosineLatitudes();
+        var fromLatitude = DoubleVector.broadcast(SPECIES, latitudes[from]);
+        var fromLongitude = DoubleVector.broadcast(SPECIES, longitudes[from]);
+        double fromCosine = cosines[from];
+
+        int bound = SPECIES.loopBound(count);
+        for (int k = 0; k < bound; k += SPECIES.length()) {
+            var sineLatitude = DoubleVector.fromArray(SPECIES, latitudes, toStart + k)
+                    .sub(fromLatitude).mul(0.5).lanewise(VectorOperators.SIN);
+            var sineLongitude = DoubleVector.fromArray(SPECIES, longitudes, toStart + k)
+                    .sub(fromLongitude).mul(0.5).lanewise(VectorOperators.SIN);
+            var cosineProduct = DoubleVector.fromArray(SPECIES, cosines, toStart + k).mul(fromCosine);
+            var chordLengthMeasure = sineLatitude.mul(sineLatitude)
+                    .add(cosineProduct.mul(sineLongitude).mul(sineLongitude))
+                    .min(1);
+            chordLengthMeasure.lanewise(VectorOperators.SQRT)
+                    .lanewise(VectorOperators.ASIN)
+                    .mul(2 * EARTH_RADIUS)
+                    .intoArray(output, outputOffset + k);
+        }
+        return bound;
+    }
+
+    private static int equirectangular(PreparedCoordinates coordinates, int from, int toStart, int count, double[] output, int outputOffset) {
+        double[] latitudes = coordinates.getLatitudeRadians();
+        double[] longitudes = coordinates.getLongitudeRadians();
+        double[] cosines = coordinates.getCosineLatitudes();
+        var fromLatitude = DoubleVector.broadcast(SPECIES, latitudes[from]);
+        var fromLongitude = DoubleVector.broadcast(SPECIES, longitudes[from]);
+        double fromCosine = cosines[from];
+
+        int bound = SPECIES.loopBound(count);
+        for (int k = 0; k < bound; k += SPECIES.length()) {
+            var deltaLatitude = DoubleVector.fromArray(SPECIES, latitudes, toStart + k).sub(fromLatitude);
+            var deltaLongitude = DoubleVector.fromArray(SPECIES, longitudes, toStart + k).sub(fromLongitude);
+            deltaLongitude = deltaLongitude
+                    .sub(2 * Math.PI, deltaLongitude.compare(VectorOperators.GT, Math.PI))
+                    .add(2 * Math.PI, deltaLongitude.compare(VectorOperators.LT, -Math.PI));
+            var x = DoubleVector.fromArray(SPECIES, cosines, toStart + k).add(fromCosine).mul(0.5).mul(deltaLongitude);
+            x.fma(x, deltaLatitude.mul(deltaLatitude))
+                    .lanewise(VectorOperators.SQRT)
+                    .mul(EARTH_RADIUS)
+                    .intoArray(output, outputOffset + k);
+        }
+        return bound;
+    }
+
+    private static int squaredEuclidean(PreparedCoordinates coordinates, int from, int toStart, int count, double[] output, int outputOffset) {
+        double[] projectedX = coordinates.getProjectedX();
+        double[] projectedY = coordinates.getProjectedY();
+        var fromX = DoubleVector.broadcast(SPECIES, projectedX[from]);
+        var fromY = DoubleVector.broadcast(SPECIES, projectedY[from]);
+
+        int bound = SPECIES.loopBound(count);
+        for (int k = 0; k < bound; k += SPECIES.length()) {
+            var deltaX = DoubleVector.fromArray(SPECIES, projectedX, toStart + k).sub(fromX);
+            var deltaY = DoubleVector.fromArray(SPECIES, projectedY, toStart + k).sub(fromY);
+            deltaX.fma(deltaX, deltaY.mul(deltaY)).intoArray(output, outputOffset + k);
+        }
+        return bound;
+    }
+}
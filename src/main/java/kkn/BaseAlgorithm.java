@@ -1,16 +1,22 @@
 package kkn;
 
 import lombok.SneakyThrows;
+import model.BoundedMaxHeap;
+import model.HaarEnergyIndex;
+import model.MappedWaveletFile;
+import org.jboss.logging.Logger;
+import utility.FileUtility;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
-import static utility.LogUtility.*;
+import static utility.Instrumentation.*;
 import static utility.MathUtility.*;
-import static utility.MathUtility.computeSumQuantityEqualSignsUpToDepth;
 import static utility.ProcessingUtility.*;
 
 public class BaseAlgorithm {
 
+    private static final Logger LOG = Logger.getLogger(BaseAlgorithm.class);
     private static final Random random = new Random();
 
     @SneakyThrows
@@ -53,48 +59,42 @@ public class BaseAlgorithm {
         List<Double> P9 = generateRandomList();
         List<Double> P10 = generateRandomList();
 
-        List<Double> queryHaarArray = discreteHaarWaveletTransform(new ArrayList<>(Q));
-        List<Double> p1HaarArray = discreteHaarWaveletTransform(new ArrayList<>(P1));
-        List<Double> p2HaarArray = discreteHaarWaveletTransform(new ArrayList<>(P2));
-        List<Double> p3HaarArray = discreteHaarWaveletTransform(new ArrayList<>(P3));
-        List<Double> p4HaarArray = discreteHaarWaveletTransform(new ArrayList<>(P4));
-        List<Double> p5HaarArray = discreteHaarWaveletTransform(new ArrayList<>(P5));
-        List<Double> p6HaarArray = discreteHaarWaveletTransform(new ArrayList<>(P6));
-        List<Double> p7HaarArray = discreteHaarWaveletTransform(new ArrayList<>(P7));
-        List<Double> p8HaarArray = discreteHaarWaveletTransform(new ArrayList<>(P8));
-        List<Double> p9HaarArray = discreteHaarWaveletTransform(new ArrayList<>(P9));
-        List<Double> p10HaarArray = discreteHaarWaveletTransform(new ArrayList<>(P10));
+        List<Double> queryHaarArray = discreteHaarWaveletTransform(Q);
+        List<Double> p1HaarArray = discreteHaarWaveletTransform(P1);
+        List<Double> p2HaarArray = discreteHaarWaveletTransform(P2);
+        List<Double> p3HaarArray = discreteHaarWaveletTransform(P3);
+        List<Double> p4HaarArray = discreteHaarWaveletTransform(P4);
+        List<Double> p5HaarArray = discreteHaarWaveletTransform(P5);
+        List<Double> p6HaarArray = discreteHaarWaveletTransform(P6);
+        List<Double> p7HaarArray = discreteHaarWaveletTransform(P7);
+        List<Double> p8HaarArray = discreteHaarWaveletTransform(P8);
+        List<Double> p9HaarArray = discreteHaarWaveletTransform(P9);
+        List<Double> p10HaarArray = discreteHaarWaveletTransform(P10);
         //endregion
 
         //region Create data set object
         List<List<Double>> dataSetWaveletTransform = new ArrayList<>();
-        dataSetWaveletTransform.add(P1);
-        dataSetWaveletTransform.add(P2);
-        dataSetWaveletTransform.add(P3);
-        dataSetWaveletTransform.add(P4);
-        dataSetWaveletTransform.add(P5);
-        dataSetWaveletTransform.add(P6);
-        dataSetWaveletTransform.add(P7);
-        dataSetWaveletTransform.add(P8);
-        dataSetWaveletTransform.add(P9);
-        dataSetWaveletTransform.add(P10);
+        dataSetWaveletTransform.add(p1HaarArray);
+        dataSetWaveletTransform.add(p2HaarArray);
+        dataSetWaveletTransform.add(p3HaarArray);
+        dataSetWaveletTransform.add(p4HaarArray);
+        dataSetWaveletTransform.add(p5HaarArray);
+        dataSetWaveletTransform.add(p6HaarArray);
+        dataSetWaveletTransform.add(p7HaarArray);
+        dataSetWaveletTransform.add(p8HaarArray);
+        dataSetWaveletTransform.add(p9HaarArray);
+        dataSetWaveletTransform.add(p10HaarArray);
         //endregion
 
-        if (isDebugging()) {
-            printCurrentMethod();
-            printIndentedLine("Q: " + queryHaarArray);
-            printIndentedLine("P1: " + p1HaarArray);
-            printIndentedLine("P2: " + p2HaarArray);
-            printIndentedLine("P3: " + p3HaarArray);
-            printIndentedLine("P4: " + p4HaarArray);
-            printIndentedLine("P5: " + p5HaarArray);
-            printIndentedLine("P6: " + p6HaarArray);
-            printIndentedLine("P7: " + p7HaarArray);
-            printIndentedLine("P8: " + p8HaarArray);
-            printIndentedLine("P9: " + p9HaarArray);
-            printIndentedLine("P10: " + p10HaarArray);
-        }
-        if (isDebugging()) {
+        // Query-independent record statistics, built once at load time
+        var energyIndex = HaarEnergyIndex.of(dataSetWaveletTransform);
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debugf("Q: %s", queryHaarArray);
+            for (int record = 0; record < dataSetWaveletTransform.size(); record++) {
+                LOG.debugf("P%d: %s", record + 1, dataSetWaveletTransform.get(record));
+            }
+
             double distanceP1 = haarTreeEuclideanDistance(p1HaarArray, queryHaarArray, 3);
             double distanceP2 = haarTreeEuclideanDistance(p2HaarArray, queryHaarArray, 3);
             double distanceP1Depth3 = bottomUpHaarTreeEuclideanDistance(p1HaarArray, queryHaarArray, 3);
@@ -102,12 +102,12 @@ public class BaseAlgorithm {
             double distanceP2Depth3 = bottomUpHaarTreeEuclideanDistance(p2HaarArray, queryHaarArray, 3);
             double distanceP2Depth2 = bottomUpHaarTreeEuclideanDistance(p2HaarArray, queryHaarArray, 2);
 
-            System.out.println("D(P1, Q) = " + distanceP1);
-            System.out.println("D(P2, Q) = " + distanceP2);
-            System.out.println("D(P1, Q) at starting level 3 is " + distanceP1Depth3);
-            System.out.println("D(P1, Q) at starting level 2 is " + distanceP1Depth2);
-            System.out.println("D(P2, Q) at starting level 3 is " + distanceP2Depth3);
-            System.out.println("D(P2, Q) at starting level 2 is " + distanceP2Depth2 + "\n");
+            LOG.debugf("D(P1, Q) = %s", distanceP1);
+            LOG.debugf("D(P2, Q) = %s", distanceP2);
+            LOG.debugf("D(P1, Q) at starting level 3 is %s", distanceP1Depth3);
+            LOG.debugf("D(P1, Q) at starting level 2 is %s", distanceP1Depth2);
+            LOG.debugf("D(P2, Q) at starting level 3 is %s", distanceP2Depth3);
+            LOG.debugf("D(P2, Q) at starting level 2 is %s", distanceP2Depth2);
         }
 
         double sumQuantityDepth3Query = preComputeSumToDepth(queryHaarArray, 3);
@@ -143,108 +143,116 @@ public class BaseAlgorithm {
 //        double upperBoundsP2Depth2 = computeUpperBounds(queryHaarArray, p2HaarArray, 2);
 //        double upperBoundsP2Depth1 = computeUpperBounds(queryHaarArray, p2HaarArray, 1);
 
-        List<List<Double>> kNearestNeighbors = stepwiseSimilaritySearch(dataSetWaveletTransform, queryHaarArray, 3);
+        List<List<Double>> kNearestNeighbors = stepwiseSimilaritySearch(dataSetWaveletTransform, energyIndex, queryHaarArray, 3);
+
+        // Optionally run the same search over the level-major file, written to the given path
+        if (args.length > 0) {
+            var waveletFile = FileUtility.buildFilePath(args[0]);
+            MappedWaveletFile.write(dataSetWaveletTransform, waveletFile);
+            double[] query = queryHaarArray.stream().mapToDouble(Double::doubleValue).toArray();
+            int[] nearestRecords = new MappedStepwiseSearch(MappedWaveletFile.open(waveletFile), ForkJoinPool.commonPool()).search(query, 3);
+            LOG.infof("Nearest records in %s: %s", waveletFile, Arrays.toString(nearestRecords));
+        }
     }
 
-    private static List<List<Double>> stepwiseSimilaritySearch(List<List<Double>> candidateSet, List<Double> queryHaarSeries, int nearestNeighbours) {
-        printCurrentMethod();
+    static List<List<Double>> stepwiseSimilaritySearch(List<List<Double>> candidateSet, HaarEnergyIndex energyIndex, List<Double> queryHaarSeries, int nearestNeighbours) {
+        return stepwiseSimilaritySearch(candidateSet, energyIndex, queryHaarSeries, nearestNeighbours, null);
+    }
 
-        // Step 1: Compute Σ_lq
-        double sigma_lq = computeSigmaForEveryLevel(queryHaarSeries);
+    /**
+     * @param pool the pool to compute each round's bounds on in chunks, or null to compute them on the calling thread
+     */
+    static List<List<Double>> stepwiseSimilaritySearch(List<List<Double>> candidateSet, HaarEnergyIndex energyIndex, List<Double> queryHaarSeries, int nearestNeighbours, ForkJoinPool pool) {
+        long started = System.nanoTime();
 
         // Step 2: Initialization
         int r = getBinaryExponent(queryHaarSeries);
-        printIndentedLine("r := " + r);
-        printIndentedLine("Initialized candidate set C := all records.");
-        printIndentedLine(String.valueOf(candidateSet));
-
-        // Step 3, 4: Compute Σ_lp, Σ_p, Σ_o_q, Σ_e_q for each record
-        List<Double> sigma_lp_list = new ArrayList<>();
-        List<Double> sigma_p_list = new ArrayList<>();
-        List<Double> sigma_o_q_list = new ArrayList<>();
-        List<Double> sigma_e_q_list = new ArrayList<>();
-        for (List<Double> record : candidateSet) {
-            sigma_lp_list.add(computeSigmaForEveryLevel(record));
-            sigma_p_list.add(sumOfSquares(record));
-            sigma_o_q_list.add(computeSigmaOppositeSignsForEveryLevel(queryHaarSeries, record));
-            sigma_e_q_list.add(computeSigmaEqualSignsForEveryLevel(queryHaarSeries, record));
+        LOG.debugf("r := %d, initialized candidate set C := all %d records", r, candidateSet.size());
+
+        // Step 1, 3, 4: Σ_lq, Σ_lp, Σ_p, Σ_o_q and Σ_e_q over every level. The bounds only use their per-depth
+        // counterparts, so the whole-series sums are computed for the debug log alone
+        if (LOG.isDebugEnabled()) {
+            LOG.debugf("sigma_lq: %s", computeSigmaForEveryLevel(queryHaarSeries));
+            for (int recordIndex = 0; recordIndex < candidateSet.size(); recordIndex++) {
+                List<Double> record = candidateSet.get(recordIndex);
+                LOG.debugf("record %d: sigma_lp %s, sigma_p %s, sigma_o_q %s, sigma_e_q %s",
+                        recordIndex,
+                        energyIndex.getSigma(recordIndex),
+                        energyIndex.getSumOfSquares(recordIndex),
+                        computeSigmaOppositeSignsForEveryLevel(queryHaarSeries, record),
+                        computeSigmaEqualSignsForEveryLevel(queryHaarSeries, record));
+            }
         }
-        printIndentedLine("sigma_lp_list: " + sigma_lp_list);
-        printIndentedLine("sigma_p_list: " + sigma_p_list);
-        printIndentedLine("sigma_o_q_list: " + sigma_o_q_list);
-        printIndentedLine("sigma_e_q_list: " + sigma_e_q_list);
-
-        // Step 5: Begin looping
-        List<Double> lowerBounds = new ArrayList<>();
-        List<Double> upperBounds = new ArrayList<>();
-        int candidateSize = candidateSet.size();
-        while (candidateSize > nearestNeighbours) {
-            System.out.println("\nStep r := " + r);
-
-            // Step 6: Read records at level r
-            List<Integer> recordIndices = getBottomUpIndices(r, queryHaarSeries);
-            if (recordIndices.size() < 2) {
-                throw new InputMismatchException("indices of Haar tree at level " + r + " had size < 2");
+
+        // Step 5: Begin looping. C stays untouched, pruned records are cleared from the alive bitmap instead
+        var alive = new BitSet(candidateSet.size());
+        alive.set(0, candidateSet.size());
+        var nearestUpperBounds = new BoundedMaxHeap(nearestNeighbours);
+        double[] lowerBounds = new double[candidateSet.size()];
+        double[] upperBounds = new double[candidateSet.size()];
+        int[] aliveRecords = new int[candidateSet.size()];
+        boolean levelVisited = false;
+        while (alive.cardinality() > nearestNeighbours && r >= 1) {
+
+            // Step 6, 7, 8: Read the alive records at level r and calculate their double bounds
+            int aliveCount = 0;
+            for (int record = alive.nextSetBit(0); record >= 0; record = alive.nextSetBit(record + 1)) {
+                aliveRecords[aliveCount++] = record;
             }
-            List<List<Double>> recordsAtLevel = candidateSet.stream()
-                    .toList()
-                    .subList(recordIndices.get(0), recordIndices.get(recordIndices.size() - 1) + 1);
-            printIndentedLine("Record indices at depth " + r + " are " + recordIndices);
-            printIndentedLine("Records:");
-            printIndentedLine(String.valueOf(recordsAtLevel));
-
-            // Step 7: Calculate sigma-up-to-level-r quantities, sigma query quantities
-            List<Double> D_r_k = new ArrayList<>();
-            List<Double> sigma_r_lp_list = new ArrayList<>();
-            List<Double> sigma_r_p_list = new ArrayList<>();
-            List<Double> sigma_r_o_q_list = new ArrayList<>();
-            List<Double> sigma_r_e_q_list = new ArrayList<>();
-            double sigma_r_lq = bottomUpPreComputeSumToDepth(queryHaarSeries, r);
-            for (List<Double> record : recordsAtLevel) {
-                D_r_k.add(bottomUpHaarTreeEuclideanDistance(record, queryHaarSeries, r));
-                sigma_r_lp_list.add(bottomUpPreComputeSumToDepth(record, r));
-                sigma_r_p_list.add(preComputeSumQuantity(record, r));
-                sigma_r_o_q_list.add(computeSumQuantityOppositeSignsUpToDepth(queryHaarSeries, record, r));
-                sigma_r_e_q_list.add(computeSumQuantityEqualSignsUpToDepth(queryHaarSeries, record, r));
+            int depth = r;
+            double querySumToDepth = bottomUpPreComputeSumToDepth(queryHaarSeries, depth);
+            ChunkedBounds.compute(aliveRecords, aliveCount, (records, from, to) -> {
+                for (int i = from; i < to; i++) {
+                    int record = records[i];
+                    lowerBounds[record] = computeLowerBounds(queryHaarSeries, candidateSet.get(record), depth, querySumToDepth, energyIndex, record);
+                    upperBounds[record] = computeUpperBounds(queryHaarSeries, candidateSet.get(record), depth, querySumToDepth, energyIndex, record);
+                }
+            }, pool, ChunkedBounds.DEFAULT_CHUNK_SIZE);
+
+            // Offering in record order keeps the heap, and so the result, independent of the chunking
+            nearestUpperBounds.clear();
+            for (int i = 0; i < aliveCount; i++) {
+                nearestUpperBounds.offer(upperBounds[aliveRecords[i]], aliveRecords[i]);
             }
-            printIndentedLine("D_r_k: " + D_r_k);
-            printIndentedLine("sigma_r_lp: " + sigma_r_lp_list);
-            printIndentedLine("sigma_r_lq: " + sigma_r_lq);
-            printIndentedLine("sigma_r_p: " + sigma_r_p_list);
-            printIndentedLine("sigma_r_o_q: " + sigma_r_o_q_list);
-            printIndentedLine("sigma_r_e_q: " + sigma_r_e_q_list);
-
-            // Step 8: Calculate double bounds for each candidate
-            for (List<Double> record : recordsAtLevel) {
-                lowerBounds.add(computeLowerBounds(queryHaarSeries, record, r));
-                upperBounds.add(computeUpperBounds(queryHaarSeries, record, r));
+            levelVisited = true;
+            if (LOG.isTraceEnabled()) {
+                LOG.tracef("lower bounds for depth %d: %s", r, Arrays.toString(lowerBounds));
+                LOG.tracef("upper bounds for depth %d: %s", r, Arrays.toString(upperBounds));
             }
-            printIndentedLine("lower bounds for depth " + r + ": " + lowerBounds);
-            printIndentedLine("upper bounds for depth " + r + ": " + upperBounds);
-
-            // Step 9: Find k-th upper bound value in C
-            if (upperBounds.size() >= nearestNeighbours) {
-                double upperBound = upperBounds.get(nearestNeighbours);
-                printIndentedLine("k-th upper bound is " + upperBound);
-
-                // Step 10: Prune records having lower bound greater than the above upper bound in C
-                for (int i = 0; i < lowerBounds.size(); i++) {
-                    if (lowerBounds.get(i) > upperBound) {
-                        printIndentedLine(lowerBounds.get(i) + " was bigger than " + upperBound + "!");
-                        printIndentedLine("Pruning record " + candidateSet.get(i) + "...");
-                        candidateSet.set(i, null);
-                        candidateSize--;
-                    }
+
+            // Step 9: Find k-th upper bound value in C, infinite while fewer than k records are alive
+            double upperBound = nearestUpperBounds.getThreshold();
+
+            // Step 10: Prune records having lower bound greater than the above upper bound in C
+            int pruned = 0;
+            for (int record = alive.nextSetBit(0); record >= 0; record = alive.nextSetBit(record + 1)) {
+                if (lowerBounds[record] > upperBound) {
+                    alive.clear(record);
+                    pruned++;
                 }
             }
+            recordStepwisePruning(r, pruned);
+            if (LOG.isDebugEnabled()) {
+                LOG.debugf("Step r := %d: k-th upper bound is %s, pruned %d of %d records", r, upperBound, pruned, aliveCount);
+            }
+            r--;
+        }
 
-            if (r > 1) {
-                r--;
+        // Step 11: Cleanup. The records holding the k smallest upper bounds always survive pruning, and at r = 1 the
+        // bounds are exact, so they are the answer even if ties kept more than k records alive
+        List<List<Double>> nearest = new ArrayList<>();
+        if (!levelVisited) {
+            nearest.addAll(candidateSet);
+        } else {
+            double[] sortedUpperBounds = new double[nearestUpperBounds.getSize()];
+            int[] records = new int[nearestUpperBounds.getSize()];
+            nearestUpperBounds.toSortedArrays(sortedUpperBounds, records);
+            for (int record : records) {
+                nearest.add(candidateSet.get(record));
             }
         }
-        // Step 11: Cleanup
-        candidateSet.removeIf(Objects::isNull);
-        printIfLogging("\nFinal candidate set is: " + candidateSet);
-        return candidateSet;
+        recordQueryLatency(STEPWISE_SEARCH, started);
+        LOG.debugf("Final candidate set holds %d records", nearest.size());
+        return nearest;
     }
 }
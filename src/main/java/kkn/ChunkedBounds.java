@@ -0,0 +1,66 @@
+package kkn;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs the per-record bound computation of one search round over the surviving records, either on the calling
+ * thread or split into chunks on a fork-join pool. Every record writes only its own slots of the bound arrays, so
+ * the chunks need no coordination and the results are identical to the sequential run.
+ */
+final class ChunkedBounds {
+
+    static final int DEFAULT_CHUNK_SIZE = 256;
+
+    private ChunkedBounds() {
+    }
+
+    @FunctionalInterface
+    interface RangeComputation {
+        /**
+         * Computes the bounds of records[from..to).
+         */
+        void compute(int[] records, int from, int to);
+    }
+
+    /**
+     * @param pool the pool to run the chunks on, or null to compute every record on the calling thread
+     */
+    static void compute(int[] records, int count, RangeComputation computation, ForkJoinPool pool, int chunkSize) {
+        if (pool == null || count <= chunkSize) {
+            computation.compute(records, 0, count);
+        } else {
+            pool.invoke(new ChunkTask(records, 0, count, computation, chunkSize));
+        }
+    }
+
+    private static class ChunkTask extends RecursiveAction {
+
+        private final int[] records;
+        private final int from;
+        private final int to;
+        private final RangeComputation computation;
+        private final int chunkSize;
+
+        ChunkTask(int[] records, int from, int to, RangeComputation computation, int chunkSize) {
+            this.records = records;
+            this.from = from;
+            this.to = to;
+            this.computation = computation;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                computation.compute(records, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(
+                    new ChunkTask(records, from, middle, computation, chunkSize),
+                    new ChunkTask(records, middle, to, computation, chunkSize)
+            );
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package kkn;
+
+import model.BoundedMaxHeap;
+import model.HaarEnergyIndex;
+import model.MappedWaveletFile;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.InputMismatchException;
+import java.util.concurrent.ForkJoinPool;
+
+import static model.MappedWaveletFile.levelFrom;
+import static model.MappedWaveletFile.levelWidth;
+import static utility.Instrumentation.*;
+
+/**
+ * Stepwise k-NN over a MappedWaveletFile, with the same bounds as MathUtility.computeLowerBounds and
+ * computeUpperBounds. Round r reads the level-r block for the records still alive and adds it to their running
+ * distance D_r, while the finer levels enter the bounds only through the energy index and the sign planes.
+ * So the coefficients of a level are only read once the candidates have shrunk that far, and never if the search
+ * ends above it. Each round's bounds can be computed in chunks on a fork-join pool, with identical results.
+ * <p>
+ * A batch of queries runs the rounds together: a record's level-r coefficients and sign words are read once per
+ * round for every query that still has it alive, while each query keeps its own bounds, alive set and k-th upper
+ * bound. A query holds three doubles per record of the file, which bounds the useful batch size. The shared reads
+ * only pay off when the level blocks are not in the page cache; over a cached file the bound arithmetic dominates and a
+ * batch takes about as long as its queries run one by one, see BatchStepwiseSearchBenchmark.
+ * A search instance reuses its buffers, so keep one per thread.
+ */
+public class MappedStepwiseSearch {
+
+    private final MappedWaveletFile file;
+    private final HaarEnergyIndex energyIndex;
+    private final int seriesLength;
+    private final int levelCount;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    private final int[] aliveRecords;
+    private QueryState[] states = new QueryState[0];
+
+    public MappedStepwiseSearch(MappedWaveletFile file) {
+        this(file, null, ChunkedBounds.DEFAULT_CHUNK_SIZE);
+    }
+
+    public MappedStepwiseSearch(MappedWaveletFile file, ForkJoinPool pool) {
+        this(file, pool, ChunkedBounds.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param pool the pool to compute each round's bounds on, or null to compute them on the calling thread
+     * @param chunkSize the number of records per task
+     */
+    public MappedStepwiseSearch(MappedWaveletFile file, ForkJoinPool pool, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunk size must be at least 1");
+        }
+        this.file = file;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        this.energyIndex = file.getEnergyIndex();
+        this.seriesLength = file.getSeriesLength();
+        this.levelCount = file.getLevelCount();
+        this.aliveRecords = new int[file.getRecordCount()];
+    }
+
+    /**
+     * @param queryHaar the Haar transform of the query, of the file's series length
+     * @return the records of the k nearest neighbours, by ascending upper bound in the last round
+     */
+    public int[] search(double[] queryHaar, int nearestNeighbours) {
+        return search(new double[][]{queryHaar}, nearestNeighbours)[0];
+    }
+
+    /**
+     * Answers every query as search(query, nearestNeighbours) would, sharing the level reads between them.
+     * @return for each query, the records of its k nearest neighbours
+     */
+    public int[][] search(double[][] queriesHaar, int nearestNeighbours) {
+        long started = System.nanoTime();
+        ensureStates(queriesHaar.length);
+        for (int query = 0; query < queriesHaar.length; query++) {
+            if (queriesHaar[query].length != seriesLength) {
+                throw new InputMismatchException("the arrays did not have equal length");
+            }
+            states[query].prepare(queriesHaar[query], nearestNeighbours);
+        }
+        QueryState[] batch = Arrays.copyOf(states, queriesHaar.length);
+
+        for (int r = levelCount; r >= 1; r--) {
+            int aliveCount = collectAliveRecords(batch, nearestNeighbours);
+            if (aliveCount == 0) {
+                break;
+            }
+            int depth = r;
+            ChunkedBounds.compute(aliveRecords, aliveCount, (records, from, to) -> {
+                var buffers = new RecordBuffers(depth);
+                for (int i = from; i < to; i++) {
+                    int record = records[i];
+                    buffers.read(record);
+                    for (QueryState state : batch) {
+                        if (state.searching && state.alive.get(record)) {
+                            computeBounds(state, record, depth, buffers);
+                        }
+                    }
+                }
+            }, pool, chunkSize);
+
+            int pruned = 0;
+            for (QueryState state : batch) {
+                if (state.searching) {
+                    pruned += state.prune();
+                }
+            }
+            recordStepwisePruning(r, pruned);
+        }
+
+        int[][] nearest = new int[batch.length][];
+        for (int query = 0; query < batch.length; query++) {
+            nearest[query] = batch[query].result();
+        }
+        recordBatchLatency(started, batch.length);
+        return nearest;
+    }
+
+    /**
+     * Decides which queries take part in the round, i.e. those with more than k candidates left, and collects in
+     * ascending order every record alive for at least one of them.
+     * @return the number of records collected
+     */
+    private int collectAliveRecords(QueryState[] batch, int nearestNeighbours) {
+        var union = new BitSet(file.getRecordCount());
+        for (QueryState state : batch) {
+            state.searching = state.alive.cardinality() > nearestNeighbours;
+            if (state.searching) {
+                union.or(state.alive);
+            }
+        }
+        int aliveCount = 0;
+        for (int record = union.nextSetBit(0); record >= 0; record = union.nextSetBit(record + 1)) {
+            aliveRecords[aliveCount++] = record;
+        }
+        return aliveCount;
+    }
+
+    private void computeBounds(QueryState state, int record, int r, RecordBuffers buffers) {
+        int from = levelFrom(seriesLength, r);
+        int width = levelWidth(seriesLength, r);
+        double levelSum = 0;
+        for (int i = 0; i < width; i++) {
+            double difference = buffers.coefficients[i] - state.queryHaar[from + i];
+            levelSum += difference * difference;
+        }
+        double distance = (r == levelCount ? 0 : state.partialDistances[record]) + (double) (1L << r) * levelSum;
+        state.partialDistances[record] = distance;
+
+        double sigma_rl_p = energyIndex.getWeightedEnergyBelow(record, r);
+        double sigma_rp = energyIndex.getEnergyBelow(record, r);
+        double sigma_rl_query = state.weightedBelow[r];
+        double sigma_re_q = signedQuerySum(state, r, buffers, false);
+        double sigma_ro_q = signedQuerySum(state, r, buffers, true);
+        state.lowerBounds[record] = distance + sigma_rl_p + sigma_rl_query - 2 * Math.sqrt(sigma_rp * sigma_re_q);
+        state.upperBounds[record] = distance + sigma_rl_p + sigma_rl_query + 2 * Math.sqrt(sigma_rp * sigma_ro_q);
+    }
+
+    /**
+     * Sums the query weights 2^(2^l) q_i^2 over the levels below r where the record's coefficient has the same, or
+     * the opposite, strict sign as the query's, as computeSumQuantityEqualSignsUpToDepth and its opposite.
+     */
+    private double signedQuerySum(QueryState state, int r, RecordBuffers buffers, boolean opposite) {
+        if (r == 1) {
+            return 0;
+        }
+        int first = buffers.firstSign;
+        double sum = 0;
+        for (int word = first >>> 6; word < state.positiveSigns.length; word++) {
+            long positive = buffers.positiveSigns[word - (first >>> 6)];
+            long negative = buffers.negativeSigns[word - (first >>> 6)];
+            long matches = opposite
+                    ? (positive & state.negativeSigns[word]) | (negative & state.positiveSigns[word])
+                    : (positive & state.positiveSigns[word]) | (negative & state.negativeSigns[word]);
+            if (word == first >>> 6) {
+                matches &= -1L << (first & 63);
+            }
+            while (matches != 0) {
+                sum += state.weights[(word << 6) + Long.numberOfTrailingZeros(matches)];
+                matches &= matches - 1;
+            }
+        }
+        return sum;
+    }
+
+    private void ensureStates(int count) {
+        if (states.length < count) {
+            int previous = states.length;
+            states = Arrays.copyOf(states, count);
+            for (int query = previous; query < count; query++) {
+                states[query] = new QueryState();
+            }
+        }
+    }
+
+    /**
+     * A record's level-r coefficients and the sign words of its finer levels, read once per round for all queries.
+     */
+    private class RecordBuffers {
+
+        private final int r;
+        private final int firstSign;
+        private final double[] coefficients;
+        private final long[] positiveSigns;
+        private final long[] negativeSigns;
+
+        RecordBuffers(int r) {
+            this.r = r;
+            // Levels 1..r - 1 are exactly the coefficients from N / 2^(r - 1) on
+            this.firstSign = seriesLength >> (r - 1);
+            this.coefficients = new double[levelWidth(seriesLength, r)];
+            this.positiveSigns = new long[file.getSignWords()];
+            this.negativeSigns = new long[file.getSignWords()];
+        }
+
+        void read(int record) {
+            file.readLevel(r, record, coefficients, 0);
+            if (r > 1) {
+                file.readSignWords(record, firstSign >>> 6, positiveSigns, negativeSigns);
+            }
+        }
+    }
+
+    /**
+     * Everything one query of a batch keeps between rounds.
+     */
+    private class QueryState {
+
+        private final double[] partialDistances = new double[file.getRecordCount()];
+        private final double[] lowerBounds = new double[file.getRecordCount()];
+        private final double[] upperBounds = new double[file.getRecordCount()];
+        private final BitSet alive = new BitSet(file.getRecordCount());
+        private final double[] weights = new double[seriesLength];
+        private final double[] weightedBelow = new double[levelCount + 2];
+        private final long[] positiveSigns = new long[file.getSignWords()];
+        private final long[] negativeSigns = new long[file.getSignWords()];
+        private double[] queryHaar;
+        private BoundedMaxHeap nearestUpperBounds;
+        private boolean searching;
+        private boolean levelVisited;
+
+        void prepare(double[] queryHaar, int nearestNeighbours) {
+            this.queryHaar = queryHaar;
+            if (nearestUpperBounds == null || nearestUpperBounds.getCapacity() != nearestNeighbours) {
+                nearestUpperBounds = new BoundedMaxHeap(nearestNeighbours);
+            }
+            nearestUpperBounds.clear();
+            alive.set(0, file.getRecordCount());
+            levelVisited = false;
+
+            Arrays.fill(positiveSigns, 0);
+            Arrays.fill(negativeSigns, 0);
+            double weighted = 0;
+            weightedBelow[1] = 0;
+            for (int level = 1; level <= levelCount; level++) {
+                int from = levelFrom(seriesLength, level);
+                double levelWeight = Math.pow(2, Math.pow(2, level));
+                double levelEnergy = 0;
+                for (int i = from; i < from + levelWidth(seriesLength, level); i++) {
+                    weights[i] = levelWeight * queryHaar[i] * queryHaar[i];
+                    levelEnergy += queryHaar[i] * queryHaar[i];
+                    if (queryHaar[i] > 0) {
+                        positiveSigns[i >>> 6] |= 1L << i;
+                    } else if (queryHaar[i] < 0) {
+                        negativeSigns[i >>> 6] |= 1L << i;
+                    }
+                }
+                weighted += (double) (1L << level) * levelEnergy;
+                weightedBelow[level + 1] = weighted;
+            }
+        }
+
+        /**
+         * Finds the round's k-th upper bound, offering in record order, and prunes the records whose lower bound
+         * exceeds it.
+         * @return the number of records pruned
+         */
+        int prune() {
+            levelVisited = true;
+            nearestUpperBounds.clear();
+            for (int record = alive.nextSetBit(0); record >= 0; record = alive.nextSetBit(record + 1)) {
+                nearestUpperBounds.offer(upperBounds[record], record);
+            }
+            double upperBound = nearestUpperBounds.getThreshold();
+            int pruned = 0;
+            for (int record = alive.nextSetBit(0); record >= 0; record = alive.nextSetBit(record + 1)) {
+                if (lowerBounds[record] > upperBound) {
+                    alive.clear(record);
+                    pruned++;
+                }
+            }
+            return pruned;
+        }
+
+        int[] result() {
+            if (!levelVisited) {
+                return alive.stream().toArray();
+            }
+            double[] sortedUpperBounds = new double[nearestUpperBounds.getSize()];
+            int[] records = new int[nearestUpperBounds.getSize()];
+            nearestUpperBounds.toSortedArrays(sortedUpperBounds, records);
+            return records;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package model;
+
+import lombok.Getter;
+
+/**
+ * Matrix that stores only the cells inside a constraint region. All band rows are laid out back to back in one
+ * flat array, so memory scales with the band area rather than rows times columns. Cells outside the band read as
+ * positive infinity.
+ */
+@Getter
+public class BandedMatrix {
+
+    private final ConstraintRegion region;
+    private final int[] rowOffsets;
+    private final double[] values;
+
+    public BandedMatrix(ConstraintRegion region) {
+        this.region = region;
+        this.rowOffsets = new int[region.getRowSize() + 1];
+
+        long area = 0;
+        for (int row = 0; row < region.getRowSize(); row++) {
+            rowOffsets[row] = (int) area;
+            area += region.getWidth(row);
+        }
+        if (area > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("the constraint region had more than 2^31 cells");
+        }
+        rowOffsets[region.getRowSize()] = (int) area;
+        this.values = new double[(int) area];
+    }
+
+    public int getRowSize() {
+        return region.getRowSize();
+    }
+
+    public int getColumnSize() {
+        return region.getColumnSize();
+    }
+
+    /**
+     * @return the position of (row, column) in the flat value array, valid only for in-band cells
+     */
+    public int indexOf(int row, int column) {
+        return rowOffsets[row] + column - region.getLowerBound(row);
+    }
+
+    public double get(int row, int column) {
+        if (!region.contains(row, column)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return values[indexOf(row, column)];
+    }
+
+    public void set(int row, int column, double value) {
+        values[indexOf(row, column)] = value;
+    }
+}
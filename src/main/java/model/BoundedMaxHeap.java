@@ -0,0 +1,118 @@
+package model;
+
+import lombok.Getter;
+
+/**
+ * Keeps the k smallest keys seen so far, each paired with an int value. The root is the largest kept key,
+ * i.e. the k-th smallest overall, and is available in O(1); offering a key costs O(log k).
+ */
+public class BoundedMaxHeap {
+
+    @Getter
+    private final int capacity;
+    private final double[] keys;
+    private final int[] values;
+    @Getter
+    private int size;
+
+    public BoundedMaxHeap(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.keys = new double[capacity];
+        this.values = new int[capacity];
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    /**
+     * @return the largest kept key, or positive infinity while fewer than capacity keys have been offered
+     */
+    public double getThreshold() {
+        return isFull() ? keys[0] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * A key equal to the current threshold is rejected once the heap is full, so among ties the earliest offers are kept.
+     *
+     * @return true if the key was kept
+     */
+    public boolean offer(double key, int value) {
+        if (size < capacity) {
+            keys[size] = key;
+            values[size] = value;
+            siftUp(size++);
+            return true;
+        } else if (key < keys[0]) {
+            keys[0] = key;
+            values[0] = value;
+            siftDown(0);
+            return true;
+        }
+        return false;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Copies the kept entries into the given arrays in ascending key order, without modifying the heap.
+     */
+    public void toSortedArrays(double[] sortedKeys, int[] sortedValues) {
+        var copy = new BoundedMaxHeap(capacity);
+        System.arraycopy(keys, 0, copy.keys, 0, size);
+        System.arraycopy(values, 0, copy.values, 0, size);
+        copy.size = size;
+        for (int i = size - 1; i >= 0; i--) {
+            sortedKeys[i] = copy.keys[0];
+            sortedValues[i] = copy.values[0];
+            copy.removeRoot();
+        }
+    }
+
+    private void removeRoot() {
+        size--;
+        keys[0] = keys[size];
+        values[0] = values[size];
+        siftDown(0);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (keys[parent] >= keys[index]) {
+                return;
+            }
+            swap(parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) {
+                return;
+            }
+            int largest = left + 1 < size && keys[left + 1] > keys[left] ? left + 1 : left;
+            if (keys[index] >= keys[largest]) {
+                return;
+            }
+            swap(index, largest);
+            index = largest;
+        }
+    }
+
+    private void swap(int first, int second) {
+        double key = keys[first];
+        keys[first] = keys[second];
+        keys[second] = key;
+        int value = values[first];
+        values[first] = values[second];
+        values[second] = value;
+    }
+}
@@ -0,0 +1,77 @@
+package model;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Primitive form of the Sakoe-Chiba style band produced by computeConstraintRegion.
+ * Row i of the cost matrix is valid for the columns lowerBounds[i]..upperBounds[i], both inclusive.
+ */
+@Getter
+public class ConstraintRegion {
+
+    private final int[] lowerBounds;
+    private final int[] upperBounds;
+    private final int columnSize;
+    private final int maxWidth;
+
+    public ConstraintRegion(int[] lowerBounds, int[] upperBounds, int columnSize) {
+        if (lowerBounds.length != upperBounds.length) {
+            throw new IllegalArgumentException("the bound arrays did not have equal length");
+        }
+        this.lowerBounds = lowerBounds;
+        this.upperBounds = upperBounds;
+        this.columnSize = columnSize;
+
+        int widest = 0;
+        for (int row = 0; row < lowerBounds.length; row++) {
+            widest = Math.max(widest, upperBounds[row] - lowerBounds[row] + 1);
+        }
+        this.maxWidth = widest;
+    }
+
+    /**
+     * Converts the boxed [lowerBounds, upperBounds] pair, clamping both to the existing columns.
+     */
+    public static ConstraintRegion of(List<List<Integer>> constraintRegion, int columnSize) {
+        List<Integer> lower = constraintRegion.get(0);
+        List<Integer> upper = constraintRegion.get(1);
+        int[] lowerBounds = new int[lower.size()];
+        int[] upperBounds = new int[upper.size()];
+
+        for (int row = 0; row < lowerBounds.length; row++) {
+            lowerBounds[row] = Math.max(0, lower.get(row));
+            upperBounds[row] = Math.min(columnSize - 1, upper.get(row));
+        }
+        return new ConstraintRegion(lowerBounds, upperBounds, columnSize);
+    }
+
+    public int getRowSize() {
+        return lowerBounds.length;
+    }
+
+    public int getLowerBound(int row) {
+        return lowerBounds[row];
+    }
+
+    public int getUpperBound(int row) {
+        return upperBounds[row];
+    }
+
+    public int getWidth(int row) {
+        return Math.max(0, upperBounds[row] - lowerBounds[row] + 1);
+    }
+
+    public boolean contains(int row, int column) {
+        return lowerBounds[row] <= column && column <= upperBounds[row];
+    }
+
+    public long getArea() {
+        long area = 0;
+        for (int row = 0; row < lowerBounds.length; row++) {
+            area += getWidth(row);
+        }
+        return area;
+    }
+}
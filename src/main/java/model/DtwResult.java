@@ -0,0 +1,34 @@
+package model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class DtwResult {
+
+    double distance;
+    boolean exceeded;
+    long cellsEvaluated;
+    long cellsInBand;
+
+    /**
+     * @return the share of the band that was never evaluated because the computation was abandoned
+     */
+    public double getPruningRate() {
+        if (cellsInBand == 0) {
+            return 0;
+        }
+        return 1 - (double) cellsEvaluated / cellsInBand;
+    }
+
+    @Override
+    public String toString() {
+        return "DtwResult {" +
+                " distance: " + distance
+                + " exceeded: " + exceeded
+                + " cellsEvaluated: " + cellsEvaluated
+                + " cellsInBand: " + cellsInBand
+                + " }";
+    }
+}
@@ -0,0 +1,28 @@
+package model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * An approximate DTW distance from FastDtw, together with the radius it was computed with. The distance is the cost
+ * of a valid warping path, so it never undercuts the exact distance, and it approaches it as the radius grows.
+ */
+@Getter
+@AllArgsConstructor
+public class FastDtwResult {
+
+    double distance;
+    int radius;
+    int resolutions;
+    long cellsEvaluated;
+
+    @Override
+    public String toString() {
+        return "FastDtwResult {" +
+                " distance: " + distance
+                + " radius: " + radius
+                + " resolutions: " + resolutions
+                + " cellsEvaluated: " + cellsEvaluated
+                + " }";
+    }
+}
@@ -0,0 +1,158 @@
+package model;
+
+import lombok.Getter;
+
+import java.util.InputMismatchException;
+import java.util.List;
+
+/**
+ * Query-independent statistics of a dataset of Haar-transformed records, built once so the stepwise k-NN search reads
+ * them in O(1) instead of recomputing them per query and per level.
+ * <p>
+ * Levels are numbered bottom-up as in MathUtility.getBottomUpIndices: level 1 holds the finest coefficients
+ * [N/2, N), level l holds [N/2^l, N/2^(l-1)), and the top level L = log2(N) holds [0, 2). With e_l the squared sum of
+ * a record's coefficients at level l, each record keeps the prefix sums
+ * <pre>
+ *   energy(l)   = e_1 + ... + e_l
+ *   weighted(l) = 2^1 e_1 + ... + 2^l e_l
+ * </pre>
+ * for l = 0..L, in flat arrays with L + 1 slots per record.
+ */
+public class HaarEnergyIndex {
+
+    @Getter
+    private final int recordCount;
+    @Getter
+    private final int seriesLength;
+    @Getter
+    private final int levelCount;
+    private final double[] energyPrefix;
+    private final double[] weightedPrefix;
+    private final double[] sigmas;
+
+    private HaarEnergyIndex(int recordCount, int seriesLength) {
+        if (seriesLength < 2 || Integer.bitCount(seriesLength) != 1) {
+            throw new InputMismatchException("Haar array was not of size 2^k");
+        }
+        this.recordCount = recordCount;
+        this.seriesLength = seriesLength;
+        this.levelCount = Integer.numberOfTrailingZeros(seriesLength);
+        this.energyPrefix = new double[recordCount * (levelCount + 1)];
+        this.weightedPrefix = new double[recordCount * (levelCount + 1)];
+        this.sigmas = new double[recordCount];
+    }
+
+    /**
+     * Wraps prefix sums read back from storage, see MappedWaveletFile.
+     */
+    HaarEnergyIndex(int recordCount, int seriesLength, double[] energyPrefix, double[] weightedPrefix, double[] sigmas) {
+        this.recordCount = recordCount;
+        this.seriesLength = seriesLength;
+        this.levelCount = Integer.numberOfTrailingZeros(seriesLength);
+        this.energyPrefix = energyPrefix;
+        this.weightedPrefix = weightedPrefix;
+        this.sigmas = sigmas;
+    }
+
+    /**
+     * Indexes a flat dataset, where record r occupies transformed[r * seriesLength..(r + 1) * seriesLength).
+     */
+    public static HaarEnergyIndex build(double[] transformed, int seriesLength) {
+        if (seriesLength < 1 || transformed.length % seriesLength != 0) {
+            throw new InputMismatchException("the dataset length " + transformed.length + " is not a multiple of " + seriesLength);
+        }
+        var index = new HaarEnergyIndex(transformed.length / seriesLength, seriesLength);
+        for (int record = 0; record < index.recordCount; record++) {
+            index.add(record, transformed, record * seriesLength);
+        }
+        return index;
+    }
+
+    public static HaarEnergyIndex of(List<List<Double>> transformedRecords) {
+        int seriesLength = transformedRecords.isEmpty() ? 2 : transformedRecords.get(0).size();
+        var index = new HaarEnergyIndex(transformedRecords.size(), seriesLength);
+        double[] buffer = new double[seriesLength];
+        for (int record = 0; record < index.recordCount; record++) {
+            var coefficients = transformedRecords.get(record);
+            if (coefficients.size() != seriesLength) {
+                throw new InputMismatchException("the arrays did not have equal length");
+            }
+            for (int i = 0; i < seriesLength; i++) {
+                buffer[i] = coefficients.get(i);
+            }
+            index.add(record, buffer, 0);
+        }
+        return index;
+    }
+
+    private void add(int record, double[] coefficients, int offset) {
+        sigmas[record] = prefixSums(coefficients, offset, seriesLength, energyPrefix, weightedPrefix, record * (levelCount + 1));
+    }
+
+    /**
+     * Writes one record's energy and weighted prefix sums for levels 1..L to both arrays from base + 1 on.
+     * @return the record's sigma
+     */
+    static double prefixSums(double[] coefficients, int offset, int seriesLength, double[] energyPrefix, double[] weightedPrefix, int base) {
+        int levelCount = Integer.numberOfTrailingZeros(seriesLength);
+        double energy = 0;
+        double weighted = 0;
+        double sigma = 0;
+        for (int level = 1; level <= levelCount; level++) {
+            int from = level == levelCount ? 0 : seriesLength >> level;
+            int to = seriesLength >> (level - 1);
+            double levelEnergy = 0;
+            for (int i = from; i < to; i++) {
+                double coefficient = coefficients[offset + i];
+                levelEnergy += coefficient * coefficient;
+            }
+            energy += levelEnergy;
+            weighted += (double) (1L << level) * levelEnergy;
+            // computeSigmaForEveryLevel weighs the levels top-down, i.e. bottom-up level l by 2^(L - l + 1)
+            sigma += (double) (1L << (levelCount - level + 1)) * levelEnergy;
+            energyPrefix[base + level] = energy;
+            weightedPrefix[base + level] = weighted;
+        }
+        return sigma;
+    }
+
+    double[] getEnergyPrefix() {
+        return energyPrefix;
+    }
+
+    double[] getWeightedPrefix() {
+        return weightedPrefix;
+    }
+
+    double[] getSigmas() {
+        return sigmas;
+    }
+
+    /**
+     * @return Σ_lp, as computeSigmaForEveryLevel
+     */
+    public double getSigma(int record) {
+        return sigmas[record];
+    }
+
+    /**
+     * @return Σ_p, as sumOfSquares
+     */
+    public double getSumOfSquares(int record) {
+        return energyPrefix[record * (levelCount + 1) + levelCount];
+    }
+
+    /**
+     * @return Σ_r_lp, the weighted energy of the levels below depth, as bottomUpPreComputeSumToDepth
+     */
+    public double getWeightedEnergyBelow(int record, int depth) {
+        return weightedPrefix[record * (levelCount + 1) + depth - 1];
+    }
+
+    /**
+     * @return the energy of the levels below depth, as bottomUpSumDataPointsUpToLevel
+     */
+    public double getEnergyBelow(int record, int depth) {
+        return energyPrefix[record * (levelCount + 1) + depth - 1];
+    }
+}
@@ -0,0 +1,260 @@
+package model;
+
+import lombok.Getter;
+import lombok.SneakyThrows;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Binary trajectory file, read through FileChannel.map so every JVM on a host shares the same page cache.
+ * <p>
+ * Layout, little-endian and 8-byte aligned throughout:
+ * <pre>
+ *   header    64 bytes: magic, version, trajectory count, point count, byte offset of each section
+ *   latitude  double[pointCount]
+ *   longitude double[pointCount]
+ *   timestamp long[pointCount], epoch millis
+ *   index     trajectoryCount entries of (int uniqueId, int length, long first point), sorted by uniqueId
+ * </pre>
+ * Trajectories are stored in uniqueId order, so the index also gives their order in the columns. Files use the
+ * ".trj" extension by convention.
+ */
+public class MappedTrajectoryFile {
+
+    private static final long MAGIC = 0x314A4152_54575444L; // "DTWTRAJ1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int INDEX_ENTRY_SIZE = 16;
+
+    @Getter
+    private final int trajectoryCount;
+    @Getter
+    private final int pointCount;
+    private final DoubleBuffer latitudes;
+    private final DoubleBuffer longitudes;
+    private final LongBuffer timestamps;
+    private final ByteBuffer index;
+
+    private MappedTrajectoryFile(int trajectoryCount, int pointCount, DoubleBuffer latitudes, DoubleBuffer longitudes,
+                                 LongBuffer timestamps, ByteBuffer index) {
+        this.trajectoryCount = trajectoryCount;
+        this.pointCount = pointCount;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.timestamps = timestamps;
+        this.index = index;
+    }
+
+    @SneakyThrows
+    public static void write(TrajectoryStore store, Path path) {
+        int trajectoryCount = store.getTrajectoryCount();
+        long pointCount = store.getPointCount();
+        long latitudeOffset = HEADER_SIZE;
+        long longitudeOffset = latitudeOffset + pointCount * Double.BYTES;
+        long timestampOffset = longitudeOffset + pointCount * Double.BYTES;
+        long indexOffset = timestampOffset + pointCount * Long.BYTES;
+
+        int[] order = new int[trajectoryCount];
+        for (int position = 0; position < trajectoryCount; position++) {
+            order[position] = store.getTrajectoryAtSortedPosition(position);
+        }
+
+        try (var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Writes through a mapping only reach the file via MappedByteBuffer.force, not FileChannel.force
+            MappedByteBuffer header = map(channel, FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            MappedByteBuffer latitudeSection = map(channel, FileChannel.MapMode.READ_WRITE, latitudeOffset, pointCount * Double.BYTES);
+            MappedByteBuffer longitudeSection = map(channel, FileChannel.MapMode.READ_WRITE, longitudeOffset, pointCount * Double.BYTES);
+            MappedByteBuffer timestampSection = map(channel, FileChannel.MapMode.READ_WRITE, timestampOffset, pointCount * Long.BYTES);
+            MappedByteBuffer index = map(channel, FileChannel.MapMode.READ_WRITE, indexOffset, (long) trajectoryCount * INDEX_ENTRY_SIZE);
+
+            header.putLong(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(trajectoryCount)
+                    .putLong(pointCount)
+                    .putLong(latitudeOffset)
+                    .putLong(longitudeOffset)
+                    .putLong(timestampOffset)
+                    .putLong(indexOffset);
+
+            var latitudes = latitudeSection.asDoubleBuffer();
+            var longitudes = longitudeSection.asDoubleBuffer();
+            var timestamps = timestampSection.asLongBuffer();
+            var storeLatitudes = store.getLatitudes();
+            var storeLongitudes = store.getLongitudes();
+            var storeTimestamps = store.getTimestamps();
+            long firstPoint = 0;
+            for (int trajectory : order) {
+                int start = store.getStart(trajectory);
+                int length = store.getLength(trajectory);
+                latitudes.put(storeLatitudes.slice(start, length));
+                longitudes.put(storeLongitudes.slice(start, length));
+                timestamps.put(storeTimestamps.slice(start, length));
+                index.putInt(store.getUniqueId(trajectory)).putInt(length).putLong(firstPoint);
+                firstPoint += length;
+            }
+            latitudeSection.force();
+            longitudeSection.force();
+            timestampSection.force();
+            index.force();
+            header.force();
+        }
+    }
+
+    @SneakyThrows
+    public static MappedTrajectoryFile open(Path path) {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var header = map(channel, FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getLong() != MAGIC) {
+                throw new IllegalArgumentException(path + " is not a binary trajectory file");
+            } else if (header.getInt() != VERSION) {
+                throw new IllegalArgumentException(path + " has an unsupported version");
+            }
+            int trajectoryCount = header.getInt();
+            long pointCount = header.getLong();
+            long latitudeOffset = header.getLong();
+            long longitudeOffset = header.getLong();
+            long timestampOffset = header.getLong();
+            long indexOffset = header.getLong();
+
+            // The mappings stay valid after the channel is closed
+            return new MappedTrajectoryFile(
+                    trajectoryCount,
+                    (int) pointCount,
+                    map(channel, FileChannel.MapMode.READ_ONLY, latitudeOffset, pointCount * Double.BYTES).asDoubleBuffer(),
+                    map(channel, FileChannel.MapMode.READ_ONLY, longitudeOffset, pointCount * Double.BYTES).asDoubleBuffer(),
+                    map(channel, FileChannel.MapMode.READ_ONLY, timestampOffset, pointCount * Long.BYTES).asLongBuffer(),
+                    map(channel, FileChannel.MapMode.READ_ONLY, indexOffset, (long) trajectoryCount * INDEX_ENTRY_SIZE)
+            );
+        }
+    }
+
+    /**
+     * @return the position of the uniqueId in the index, or -1 if the file does not contain it
+     */
+    public int indexOf(int uniqueId) {
+        int low = 0;
+        int high = trajectoryCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int id = getUniqueId(middle);
+            if (id < uniqueId) {
+                low = middle + 1;
+            } else if (id > uniqueId) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    public int getUniqueId(int position) {
+        return index.getInt(position * INDEX_ENTRY_SIZE);
+    }
+
+    public int getLength(int position) {
+        return index.getInt(position * INDEX_ENTRY_SIZE + Integer.BYTES);
+    }
+
+    public int getStart(int position) {
+        return (int) index.getLong(position * INDEX_ENTRY_SIZE + 2 * Integer.BYTES);
+    }
+
+    public double getLatitude(int point) {
+        return latitudes.get(point);
+    }
+
+    public double getLongitude(int point) {
+        return longitudes.get(point);
+    }
+
+    public long getTimestamp(int point) {
+        return timestamps.get(point);
+    }
+
+    /**
+     * Views every trajectory as a store that reads the mapped columns in place, so the fixes are not copied to the heap
+     * and the page cache is shared with every other process mapping the file. Only the index is read into two int
+     * arrays. DtwEngine still derives its kernel's PreparedCoordinates columns onto the heap on first use, up to
+     * 24 bytes per fix in every JVM that runs DTW on the store.
+     */
+    public TrajectoryStore asStore() {
+        int[] uniqueIds = new int[trajectoryCount];
+        int[] offsets = new int[trajectoryCount + 1];
+        for (int position = 0; position < trajectoryCount; position++) {
+            uniqueIds[position] = getUniqueId(position);
+            offsets[position] = getStart(position);
+        }
+        offsets[trajectoryCount] = pointCount;
+        return new TrajectoryStore(latitudes.duplicate(), longitudes.duplicate(), timestamps.duplicate(), uniqueIds, offsets);
+    }
+
+    /**
+     * Copies only the given uniqueIds into a heap store, e.g. the shard a worker is responsible for, laid out in
+     * ascending uniqueId order as in the file. Ids missing from the file are skipped, and repeated ids copied once.
+     */
+    public TrajectoryStore toStore(int... uniqueIds) {
+        int found = 0;
+        int[] positions = new int[uniqueIds.length];
+        for (int uniqueId : uniqueIds) {
+            int position = indexOf(uniqueId);
+            if (position >= 0) {
+                positions[found++] = position;
+            }
+        }
+        Arrays.sort(positions, 0, found);
+        int distinct = 0;
+        for (int i = 0; i < found; i++) {
+            if (distinct == 0 || positions[distinct - 1] != positions[i]) {
+                positions[distinct++] = positions[i];
+            }
+        }
+        return copyPositions(positions, distinct);
+    }
+
+    private TrajectoryStore copyPositions(int[] positions, int count) {
+        int points = 0;
+        for (int i = 0; i < count; i++) {
+            points += getLength(positions[i]);
+        }
+
+        double[] storeLatitudes = new double[points];
+        double[] storeLongitudes = new double[points];
+        long[] storeTimestamps = new long[points];
+        int[] storeIds = new int[count];
+        int[] offsets = new int[count + 1];
+        int next = 0;
+        for (int i = 0; i < count; i++) {
+            int start = getStart(positions[i]);
+            int length = getLength(positions[i]);
+            latitudes.get(start, storeLatitudes, next, length);
+            longitudes.get(start, storeLongitudes, next, length);
+            timestamps.get(start, storeTimestamps, next, length);
+            storeIds[i] = getUniqueId(positions[i]);
+            offsets[i] = next;
+            next += length;
+        }
+        offsets[count] = next;
+
+        return new TrajectoryStore(storeLatitudes, storeLongitudes, storeTimestamps, storeIds, offsets);
+    }
+
+    @SneakyThrows
+    private static MappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long position, long size) {
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("a section of " + size + " bytes exceeds the 2 GiB mapping limit");
+        }
+        MappedByteBuffer buffer = channel.map(mode, position, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+}
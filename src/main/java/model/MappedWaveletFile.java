@@ -0,0 +1,466 @@
+package model;
+
+import lombok.Getter;
+import lombok.SneakyThrows;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Level-major file of Haar-transformed records for the stepwise k-NN search, read through FileChannel.map.
+ * A round at level r only needs the level-r coefficients of the records still alive, plus the energies and the
+ * coefficient signs of the finer levels, so each level is one contiguous block and the rest is kept small.
+ * <p>
+ * Layout, little-endian and 8-byte aligned throughout, with levels numbered bottom-up as in HaarEnergyIndex:
+ * <pre>
+ *   header    64 bytes: magic, version, record count, series length, byte offset of each section
+ *   energies  the HaarEnergyIndex arrays: energy prefix and weighted prefix, (L + 1) per record, then one sigma per record
+ *   signs     per record, ceil(N / 64) words with bit i set where coefficient i &gt; 0, then as many where it is &lt; 0
+ *   levels    level L first, down to level 1; each block holds width(l) coefficients per record, record after record
+ * </pre>
+ * Level l has width N / 2^l, except the top level L, which holds the average and the coarsest detail. Files use the
+ * ".wvl" extension by convention.
+ * <p>
+ * Neither side holds the coefficients in memory. The Writer streams records in, one at a time, and the sign and level
+ * sections are mapped in windows of whole records of at most 2 GiB each, so they may be far larger than the heap or RAM.
+ * What remains bounded: the record count is an int, and the energies, 2L + 3 doubles per record, are read into the
+ * heap, which caps a file at 2^31 / (L + 1) records and needs that much heap, about 8 / N of the file's size.
+ */
+public class MappedWaveletFile {
+
+    private static final long MAGIC = 0x31524141_48575444L; // "DTWHAAR1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final long MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+
+    @Getter
+    private final int recordCount;
+    @Getter
+    private final int seriesLength;
+    @Getter
+    private final int levelCount;
+    @Getter
+    private final HaarEnergyIndex energyIndex;
+    private final LongBuffer[] signWindows;
+    private final int recordsPerSignWindow;
+    private final DoubleBuffer[][] levelWindows;
+    private final int[] recordsPerLevelWindow;
+
+    private MappedWaveletFile(int recordCount, int seriesLength, HaarEnergyIndex energyIndex,
+                              LongBuffer[] signWindows, int recordsPerSignWindow,
+                              DoubleBuffer[][] levelWindows, int[] recordsPerLevelWindow) {
+        this.recordCount = recordCount;
+        this.seriesLength = seriesLength;
+        this.levelCount = Integer.numberOfTrailingZeros(seriesLength);
+        this.energyIndex = energyIndex;
+        this.signWindows = signWindows;
+        this.recordsPerSignWindow = recordsPerSignWindow;
+        this.levelWindows = levelWindows;
+        this.recordsPerLevelWindow = recordsPerLevelWindow;
+    }
+
+    public static void write(List<List<Double>> transformedRecords, Path path) {
+        int seriesLength = transformedRecords.isEmpty() ? 2 : transformedRecords.get(0).size();
+        var boxed = transformedRecords.iterator();
+        double[] buffer = new double[seriesLength];
+        write(new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return boxed.hasNext();
+            }
+
+            @Override
+            public double[] next() {
+                var coefficients = boxed.next();
+                if (coefficients.size() != seriesLength) {
+                    throw new InputMismatchException("the arrays did not have equal length");
+                }
+                for (int i = 0; i < seriesLength; i++) {
+                    buffer[i] = coefficients.get(i);
+                }
+                return buffer;
+            }
+        }, transformedRecords.size(), seriesLength, path);
+    }
+
+    /**
+     * @param transformed a flat dataset, where record r occupies transformed[r * seriesLength..(r + 1) * seriesLength)
+     */
+    public static void write(double[] transformed, int seriesLength, Path path) {
+        if (seriesLength < 1 || transformed.length % seriesLength != 0) {
+            throw new InputMismatchException("the dataset length " + transformed.length + " is not a multiple of " + seriesLength);
+        }
+        int recordCount = transformed.length / seriesLength;
+        try (var writer = new Writer(path, recordCount, seriesLength)) {
+            for (int record = 0; record < recordCount; record++) {
+                writer.append(transformed, record * seriesLength);
+            }
+        }
+    }
+
+    /**
+     * Writes the records as they come from the iterator, which may reuse one array for all of them.
+     */
+    public static void write(Iterator<double[]> transformedRecords, int recordCount, int seriesLength, Path path) {
+        try (var writer = new Writer(path, recordCount, seriesLength)) {
+            while (transformedRecords.hasNext()) {
+                writer.append(transformedRecords.next(), 0);
+            }
+        }
+    }
+
+    public static MappedWaveletFile open(Path path) {
+        return open(path, MAX_WINDOW_SIZE);
+    }
+
+    /**
+     * @param maxWindowSize the largest mapping in bytes, only lowered from 2 GiB to exercise the windows in tests
+     */
+    @SneakyThrows
+    static MappedWaveletFile open(Path path, long maxWindowSize) {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getLong() != MAGIC) {
+                throw new IllegalArgumentException(path + " is not a wavelet file");
+            } else if (header.getInt() != VERSION) {
+                throw new IllegalArgumentException(path + " has an unsupported version");
+            }
+            int recordCount = header.getInt();
+            int seriesLength = header.getInt();
+            int levelCount = header.getInt();
+            long energyOffset = header.getLong();
+            long signOffset = header.getLong();
+            long levelOffset = header.getLong();
+
+            // The energies are O(records * levels) and read for every alive record, so they are copied to the heap
+            int prefixSize = Math.multiplyExact(recordCount, levelCount + 1);
+            double[] energyPrefix = new double[prefixSize];
+            double[] weightedPrefix = new double[prefixSize];
+            double[] sigmas = new double[recordCount];
+            long position = readDoubles(channel, energyOffset, energyPrefix);
+            position = readDoubles(channel, position, weightedPrefix);
+            readDoubles(channel, position, sigmas);
+
+            // The mappings stay valid after the channel is closed
+            int signStride = 2 * signWords(seriesLength);
+            int recordsPerSignWindow = recordsPerWindow(signStride * Long.BYTES, maxWindowSize);
+            var signBytes = mapWindows(channel, signOffset, recordCount, signStride * Long.BYTES, recordsPerSignWindow);
+            var signWindows = new LongBuffer[signBytes.length];
+            for (int window = 0; window < signBytes.length; window++) {
+                signWindows[window] = signBytes[window].asLongBuffer();
+            }
+
+            var levelWindows = new DoubleBuffer[levelCount + 1][];
+            int[] recordsPerLevelWindow = new int[levelCount + 1];
+            long blockOffset = levelOffset;
+            for (int level = levelCount; level >= 1; level--) {
+                int recordSize = levelWidth(seriesLength, level) * Double.BYTES;
+                recordsPerLevelWindow[level] = recordsPerWindow(recordSize, maxWindowSize);
+                var levelBytes = mapWindows(channel, blockOffset, recordCount, recordSize, recordsPerLevelWindow[level]);
+                levelWindows[level] = new DoubleBuffer[levelBytes.length];
+                for (int window = 0; window < levelBytes.length; window++) {
+                    levelWindows[level][window] = levelBytes[window].asDoubleBuffer();
+                }
+                blockOffset += (long) recordSize * recordCount;
+            }
+            return new MappedWaveletFile(
+                    recordCount,
+                    seriesLength,
+                    new HaarEnergyIndex(recordCount, seriesLength, energyPrefix, weightedPrefix, sigmas),
+                    signWindows,
+                    recordsPerSignWindow,
+                    levelWindows,
+                    recordsPerLevelWindow
+            );
+        }
+    }
+
+    /**
+     * @return the first coefficient index of a bottom-up level, as getBottomUpIndices
+     */
+    public static int levelFrom(int seriesLength, int level) {
+        return level == Integer.numberOfTrailingZeros(seriesLength) ? 0 : seriesLength >> level;
+    }
+
+    public static int levelWidth(int seriesLength, int level) {
+        return level == Integer.numberOfTrailingZeros(seriesLength) ? 2 : seriesLength >> level;
+    }
+
+    public int getSignWords() {
+        return signWords(seriesLength);
+    }
+
+    /**
+     * Copies a record's coefficients at a bottom-up level, i.e. its indices levelFrom..levelFrom + levelWidth.
+     */
+    public void readLevel(int level, int record, double[] output, int outputOffset) {
+        int width = levelWidth(seriesLength, level);
+        int recordsPerWindow = recordsPerLevelWindow[level];
+        levelWindows[level][record / recordsPerWindow].get(record % recordsPerWindow * width, output, outputOffset, width);
+    }
+
+    /**
+     * @return the word of the record's sign plane holding coefficients 64 * word..64 * word + 63, a bit set where the
+     * coefficient is strictly positive, or strictly negative if negative is set
+     */
+    public long getSignWord(int record, int word, boolean negative) {
+        int signWords = signWords(seriesLength);
+        int base = record % recordsPerSignWindow * 2 * signWords;
+        return signWindows[record / recordsPerSignWindow].get(base + (negative ? signWords : 0) + word);
+    }
+
+    /**
+     * Copies words fromWord.. of the record's positive and negative sign planes into the start of both outputs.
+     */
+    public void readSignWords(int record, int fromWord, long[] positive, long[] negative) {
+        int signWords = signWords(seriesLength);
+        var window = signWindows[record / recordsPerSignWindow];
+        int base = record % recordsPerSignWindow * 2 * signWords;
+        window.get(base + fromWord, positive, 0, signWords - fromWord);
+        window.get(base + signWords + fromWord, negative, 0, signWords - fromWord);
+    }
+
+    private static int signWords(int seriesLength) {
+        return (seriesLength + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    private static int recordsPerWindow(int recordSize, long maxWindowSize) {
+        if (recordSize > maxWindowSize) {
+            throw new IllegalArgumentException("a record of " + recordSize + " bytes exceeds the mapping limit");
+        }
+        return (int) Math.min(Integer.MAX_VALUE, maxWindowSize / recordSize);
+    }
+
+    /**
+     * Maps a section of recordCount records in consecutive windows of recordsPerWindow records, the last one shorter,
+     * so that no record straddles two windows.
+     */
+    @SneakyThrows
+    private static ByteBuffer[] mapWindows(FileChannel channel, long offset, int recordCount, int recordSize, int recordsPerWindow) {
+        int windowCount = Math.max(1, (recordCount + recordsPerWindow - 1) / recordsPerWindow);
+        var windows = new ByteBuffer[windowCount];
+        for (int window = 0; window < windowCount; window++) {
+            long first = (long) window * recordsPerWindow;
+            long records = Math.min(recordsPerWindow, recordCount - first);
+            windows[window] = channel.map(FileChannel.MapMode.READ_ONLY, offset + first * recordSize, records * recordSize)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return windows;
+    }
+
+    /**
+     * Fills the array from the file, in chunks, as a section may be larger than a single mapping.
+     * @return the position after the last double read
+     */
+    @SneakyThrows
+    private static long readDoubles(FileChannel channel, long position, double[] output) {
+        var buffer = ByteBuffer.allocate(IO_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        int read = 0;
+        while (read < output.length) {
+            buffer.clear().limit(Math.min(IO_BUFFER_SIZE, (output.length - read) * Double.BYTES));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IllegalArgumentException("the file ended inside a section");
+                }
+            }
+            buffer.flip();
+            int count = buffer.remaining() / Double.BYTES;
+            buffer.asDoubleBuffer().get(output, read, count);
+            read += count;
+            position += (long) count * Double.BYTES;
+        }
+        return position;
+    }
+
+    /**
+     * Writes a file one record at a time, so the dataset never needs to be in memory as a whole. The record count is
+     * fixed up front, which fixes every section's offset; each record is then appended to every section at once, and
+     * each section is written sequentially through its own buffer. The header goes last, on close, so a file that was
+     * not completed is rejected by open.
+     */
+    public static class Writer implements Closeable {
+
+        private final FileChannel channel;
+        private final int recordCount;
+        private final int seriesLength;
+        private final int levelCount;
+        private final long energyOffset;
+        private final long signOffset;
+        private final long levelOffset;
+        private final Section energies;
+        private final Section weightedEnergies;
+        private final Section sigmas;
+        private final Section signs;
+        private final Section[] levels;
+        private final double[] energyPrefix;
+        private final double[] weightedPrefix;
+        private final long[] positive;
+        private final long[] negative;
+        private int appended;
+
+        @SneakyThrows
+        public Writer(Path path, int recordCount, int seriesLength) {
+            if (seriesLength < 2 || Integer.bitCount(seriesLength) != 1) {
+                throw new InputMismatchException("Haar array was not of size 2^k");
+            }
+            this.recordCount = recordCount;
+            this.seriesLength = seriesLength;
+            this.levelCount = Integer.numberOfTrailingZeros(seriesLength);
+            int signWords = signWords(seriesLength);
+
+            long prefixSize = (long) (levelCount + 1) * recordCount * Double.BYTES;
+            this.energyOffset = HEADER_SIZE;
+            this.signOffset = energyOffset + 2 * prefixSize + (long) recordCount * Double.BYTES;
+            this.levelOffset = signOffset + 2L * signWords * recordCount * Long.BYTES;
+
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            // An empty header until close, in case a previous file is being overwritten
+            channel.write(ByteBuffer.allocate(HEADER_SIZE), 0);
+            this.energies = new Section(energyOffset);
+            this.weightedEnergies = new Section(energyOffset + prefixSize);
+            this.sigmas = new Section(energyOffset + 2 * prefixSize);
+            this.signs = new Section(signOffset);
+            this.levels = new Section[levelCount + 1];
+            long blockOffset = levelOffset;
+            for (int level = levelCount; level >= 1; level--) {
+                levels[level] = new Section(blockOffset);
+                blockOffset += (long) levelWidth(seriesLength, level) * recordCount * Double.BYTES;
+            }
+            this.energyPrefix = new double[levelCount + 1];
+            this.weightedPrefix = new double[levelCount + 1];
+            this.positive = new long[signWords];
+            this.negative = new long[signWords];
+        }
+
+        /**
+         * Appends the record at coefficients[offset..offset + seriesLength).
+         */
+        public void append(double[] coefficients, int offset) {
+            if (appended == recordCount) {
+                throw new IllegalStateException("all " + recordCount + " records were already written");
+            } else if (coefficients.length - offset < seriesLength) {
+                throw new InputMismatchException("the arrays did not have equal length");
+            }
+            double sigma = HaarEnergyIndex.prefixSums(coefficients, offset, seriesLength, energyPrefix, weightedPrefix, 0);
+            for (int level = 0; level <= levelCount; level++) {
+                energies.putDouble(energyPrefix[level]);
+                weightedEnergies.putDouble(weightedPrefix[level]);
+            }
+            sigmas.putDouble(sigma);
+
+            Arrays.fill(positive, 0);
+            Arrays.fill(negative, 0);
+            for (int i = 0; i < seriesLength; i++) {
+                double coefficient = coefficients[offset + i];
+                if (coefficient > 0) {
+                    positive[i >>> 6] |= 1L << i;
+                } else if (coefficient < 0) {
+                    negative[i >>> 6] |= 1L << i;
+                }
+            }
+            for (long word : positive) {
+                signs.putLong(word);
+            }
+            for (long word : negative) {
+                signs.putLong(word);
+            }
+
+            for (int level = levelCount; level >= 1; level--) {
+                int from = levelFrom(seriesLength, level);
+                for (int i = from; i < from + levelWidth(seriesLength, level); i++) {
+                    levels[level].putDouble(coefficients[offset + i]);
+                }
+            }
+            appended++;
+        }
+
+        /**
+         * Flushes every section, then writes the header and forces the file to the device.
+         * @throws IllegalStateException if fewer records were appended than announced
+         */
+        @Override
+        @SneakyThrows
+        public void close() {
+            try {
+                if (appended != recordCount) {
+                    throw new IllegalStateException("only " + appended + " of " + recordCount + " records were written");
+                }
+                energies.flush();
+                weightedEnergies.flush();
+                sigmas.flush();
+                signs.flush();
+                for (int level = 1; level <= levelCount; level++) {
+                    levels[level].flush();
+                }
+                var header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.putLong(MAGIC)
+                        .putInt(VERSION)
+                        .putInt(recordCount)
+                        .putInt(seriesLength)
+                        .putInt(levelCount)
+                        .putLong(energyOffset)
+                        .putLong(signOffset)
+                        .putLong(levelOffset)
+                        .clear();
+                writeFully(header, 0);
+                channel.force(false);
+            } finally {
+                channel.close();
+            }
+        }
+
+        @SneakyThrows
+        private void writeFully(ByteBuffer buffer, long position) {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+
+        /**
+         * A sequentially written region of the file, buffered on the heap.
+         */
+        private class Section {
+
+            private final ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            private long position;
+
+            Section(long position) {
+                this.position = position;
+            }
+
+            void putDouble(double value) {
+                if (buffer.remaining() < Double.BYTES) {
+                    flush();
+                }
+                buffer.putDouble(value);
+            }
+
+            void putLong(long value) {
+                if (buffer.remaining() < Long.BYTES) {
+                    flush();
+                }
+                buffer.putLong(value);
+            }
+
+            void flush() {
+                buffer.flip();
+                long size = buffer.remaining();
+                writeFully(buffer, position);
+                position += size;
+                buffer.clear();
+            }
+        }
+    }
+}
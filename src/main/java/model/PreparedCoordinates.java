@@ -0,0 +1,113 @@
+package model;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * Per-fix values derived from a store's latitude and longitude columns, so distance kernels do not repeat any degree
+ * conversion or trigonometry per cell. Each group of columns is derived the first time a kernel asks for it:
+ * radians and cos(latitude) for the geodesic kernels, 24 bytes per fix, and an equirectangular projection in
+ * kilometres around the store's mean latitude for the planar one, 16 bytes per fix. A store only ever queried with
+ * one kind of kernel holds only the group that kind reads.
+ */
+public class PreparedCoordinates {
+
+    public static final double EARTH_RADIUS = 6371;
+
+    private final DoubleBuffer latitudes;
+    private final DoubleBuffer longitudes;
+    private volatile Geodesic geodesic;
+    private volatile Projection projection;
+
+    public PreparedCoordinates(DoubleBuffer latitudes, DoubleBuffer longitudes) {
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+    }
+
+    public double[] getLatitudeRadians() {
+        return geodesic().latitudeRadians;
+    }
+
+    public double[] getLongitudeRadians() {
+        return geodesic().longitudeRadians;
+    }
+
+    public double[] getCosineLatitudes() {
+        return geodesic().cosineLatitudes;
+    }
+
+    public double[] getProjectedX() {
+        return projection().projectedX;
+    }
+
+    public double[] getProjectedY() {
+        return projection().projectedY;
+    }
+
+    public double getReferenceCosine() {
+        return projection().referenceCosine;
+    }
+
+    /**
+     * Concurrent first calls may both derive the group, which is harmless, as each is published as a whole.
+     */
+    private Geodesic geodesic() {
+        var columns = geodesic;
+        if (columns == null) {
+            columns = new Geodesic(latitudes, longitudes);
+            geodesic = columns;
+        }
+        return columns;
+    }
+
+    private Projection projection() {
+        var columns = projection;
+        if (columns == null) {
+            columns = new Projection(latitudes, longitudes);
+            projection = columns;
+        }
+        return columns;
+    }
+
+    private static final class Geodesic {
+
+        private final double[] latitudeRadians;
+        private final double[] longitudeRadians;
+        private final double[] cosineLatitudes;
+
+        Geodesic(DoubleBuffer latitudes, DoubleBuffer longitudes) {
+            int size = latitudes.limit();
+            latitudeRadians = new double[size];
+            longitudeRadians = new double[size];
+            cosineLatitudes = new double[size];
+            for (int i = 0; i < size; i++) {
+                latitudeRadians[i] = Math.toRadians(latitudes.get(i));
+                longitudeRadians[i] = Math.toRadians(longitudes.get(i));
+                cosineLatitudes[i] = Math.cos(latitudeRadians[i]);
+            }
+        }
+    }
+
+    private static final class Projection {
+
+        private final double[] projectedX;
+        private final double[] projectedY;
+        private final double referenceCosine;
+
+        Projection(DoubleBuffer latitudes, DoubleBuffer longitudes) {
+            int size = latitudes.limit();
+            projectedX = new double[size];
+            projectedY = new double[size];
+
+            double latitudeSum = 0;
+            for (int i = 0; i < size; i++) {
+                latitudeSum += latitudes.get(i);
+            }
+            referenceCosine = size == 0 ? 1 : Math.cos(Math.toRadians(latitudeSum / size));
+
+            for (int i = 0; i < size; i++) {
+                projectedX[i] = EARTH_RADIUS * referenceCosine * Math.toRadians(longitudes.get(i));
+                projectedY[i] = EARTH_RADIUS * Math.toRadians(latitudes.get(i));
+            }
+        }
+    }
+}
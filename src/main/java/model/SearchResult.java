@@ -0,0 +1,48 @@
+package model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * The k nearest trajectories of a similarity search, closest first, together with how many candidates each
+ * stage of the lower-bound cascade rejected.
+ */
+@Getter
+@AllArgsConstructor
+public class SearchResult {
+
+    int[] uniqueIds;
+    double[] distances;
+    int candidates;
+    int prunedByKim;
+    int prunedByKeogh;
+    int abandonedDtw;
+    int completedDtw;
+    long cellsEvaluated;
+
+    /**
+     * @return the share of candidates for which no full DTW had to be computed
+     */
+    public double getPruningRate() {
+        if (candidates == 0) {
+            return 0;
+        }
+        return (double) (prunedByKim + prunedByKeogh + abandonedDtw) / candidates;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchResult {" +
+                " uniqueIds: " + Arrays.toString(uniqueIds)
+                + " distances: " + Arrays.toString(distances)
+                + " candidates: " + candidates
+                + " prunedByKim: " + prunedByKim
+                + " prunedByKeogh: " + prunedByKeogh
+                + " abandonedDtw: " + abandonedDtw
+                + " completedDtw: " + completedDtw
+                + " cellsEvaluated: " + cellsEvaluated
+                + " }";
+    }
+}
@@ -0,0 +1,35 @@
+package model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A store shrunk by one of the Simplification modes, with the fix counts before and after.
+ */
+@Getter
+@AllArgsConstructor
+public class SimplificationResult {
+
+    TrajectoryStore store;
+    int originalPoints;
+    int simplifiedPoints;
+
+    /**
+     * @return how many times fewer fixes the simplified store holds, e.g. 5 when it kept every fifth
+     */
+    public double getCompressionRatio() {
+        if (simplifiedPoints == 0) {
+            return 1;
+        }
+        return (double) originalPoints / simplifiedPoints;
+    }
+
+    @Override
+    public String toString() {
+        return "SimplificationResult {" +
+                " originalPoints: " + originalPoints
+                + " simplifiedPoints: " + simplifiedPoints
+                + " compressionRatio: " + getCompressionRatio()
+                + " }";
+    }
+}
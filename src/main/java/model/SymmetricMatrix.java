@@ -0,0 +1,41 @@
+package model;
+
+import lombok.Getter;
+
+/**
+ * Square symmetric matrix that stores only the upper triangle, diagonal included, row after row in one flat array.
+ */
+public class SymmetricMatrix {
+
+    @Getter
+    private final int size;
+    @Getter
+    private final double[] values;
+
+    public SymmetricMatrix(int size) {
+        long cells = (long) size * (size + 1) / 2;
+        if (cells > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("a symmetric matrix of size " + size + " does not fit in one array");
+        }
+        this.size = size;
+        this.values = new double[(int) cells];
+    }
+
+    public int indexOf(int row, int column) {
+        if (row > column) {
+            int swap = row;
+            row = column;
+            column = swap;
+        }
+        // Rows before this one hold size + (size - 1) + ... + (size - row + 1) cells
+        return (int) ((long) row * size - (long) row * (row - 1) / 2 + column - row);
+    }
+
+    public double get(int row, int column) {
+        return values[indexOf(row, column)];
+    }
+
+    public void set(int row, int column, double value) {
+        values[indexOf(row, column)] = value;
+    }
+}
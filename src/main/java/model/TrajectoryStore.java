@@ -0,0 +1,365 @@
+package model;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import utility.IntIndexMap;
+
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar storage of trajectories. Every fix is stored as one entry in each of the primitive columns,
+ * and trajectory t occupies the index range [offsets[t], offsets[t + 1]).
+ * The point columns are buffers, either wrapping heap arrays or mapped straight from a MappedTrajectoryFile, and are
+ * only ever read with absolute gets, so any number of threads can share a store.
+ */
+@Getter
+public class TrajectoryStore {
+
+    @Getter(AccessLevel.NONE)
+    private final DoubleBuffer latitudes;
+    @Getter(AccessLevel.NONE)
+    private final DoubleBuffer longitudes;
+    @Getter(AccessLevel.NONE)
+    private final LongBuffer timestamps;
+    private final int[] uniqueIds;
+    private final int[] offsets;
+
+    @Getter(AccessLevel.NONE)
+    private final int[] sortedUniqueIds;
+    @Getter(AccessLevel.NONE)
+    private final int[] sortedTrajectoryIndices;
+    private final PreparedCoordinates preparedCoordinates;
+
+    public TrajectoryStore(double[] latitudes, double[] longitudes, long[] timestamps, int[] uniqueIds, int[] offsets) {
+        this(DoubleBuffer.wrap(latitudes), DoubleBuffer.wrap(longitudes), LongBuffer.wrap(timestamps), uniqueIds, offsets);
+    }
+
+    /**
+     * Reads the point columns in place, from index 0 to their limit, without copying them.
+     */
+    TrajectoryStore(DoubleBuffer latitudes, DoubleBuffer longitudes, LongBuffer timestamps, int[] uniqueIds, int[] offsets) {
+        int pointCount = latitudes.limit();
+        if (longitudes.limit() != pointCount || timestamps.limit() != pointCount) {
+            throw new IllegalArgumentException("the point columns did not have equal length");
+        } else if (offsets.length != uniqueIds.length + 1 || offsets[uniqueIds.length] != pointCount) {
+            throw new IllegalArgumentException("the offset table did not match the point columns");
+        }
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.timestamps = timestamps;
+        this.uniqueIds = uniqueIds;
+        this.offsets = offsets;
+        this.preparedCoordinates = new PreparedCoordinates(latitudes, longitudes);
+
+        this.sortedUniqueIds = new int[uniqueIds.length];
+        this.sortedTrajectoryIndices = new int[uniqueIds.length];
+        sortIdentifiers();
+    }
+
+    public static TrajectoryStore of(List<List<Point>> trajectories) {
+        int pointCount = 0;
+        for (List<Point> trajectory : trajectories) {
+            pointCount += trajectory.size();
+        }
+
+        double[] latitudes = new double[pointCount];
+        double[] longitudes = new double[pointCount];
+        long[] timestamps = new long[pointCount];
+        int[] uniqueIds = new int[trajectories.size()];
+        int[] offsets = new int[trajectories.size() + 1];
+
+        int index = 0;
+        for (int trajectory = 0; trajectory < trajectories.size(); trajectory++) {
+            List<Point> points = trajectories.get(trajectory);
+            offsets[trajectory] = index;
+            uniqueIds[trajectory] = points.isEmpty() ? Integer.MIN_VALUE : points.get(0).getUniqueId();
+            for (Point point : points) {
+                latitudes[index] = point.getLatitude();
+                longitudes[index] = point.getLongitude();
+                timestamps[index] = point.getTimestamp().toInstant().toEpochMilli();
+                index++;
+            }
+        }
+        offsets[trajectories.size()] = index;
+
+        return new TrajectoryStore(latitudes, longitudes, timestamps, uniqueIds, offsets);
+    }
+
+    public int getTrajectoryCount() {
+        return uniqueIds.length;
+    }
+
+    public int getPointCount() {
+        return latitudes.limit();
+    }
+
+    public int getStart(int trajectory) {
+        return offsets[trajectory];
+    }
+
+    /**
+     * @return the index one past the last fix of the trajectory
+     */
+    public int getEnd(int trajectory) {
+        return offsets[trajectory + 1];
+    }
+
+    public int getLength(int trajectory) {
+        return offsets[trajectory + 1] - offsets[trajectory];
+    }
+
+    public int getUniqueId(int trajectory) {
+        return uniqueIds[trajectory];
+    }
+
+    public double getLatitude(int index) {
+        return latitudes.get(index);
+    }
+
+    public double getLongitude(int index) {
+        return longitudes.get(index);
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps.get(index);
+    }
+
+    /**
+     * @return a read-only view of the latitude column, for bulk reads
+     */
+    public DoubleBuffer getLatitudes() {
+        return latitudes.asReadOnlyBuffer();
+    }
+
+    public DoubleBuffer getLongitudes() {
+        return longitudes.asReadOnlyBuffer();
+    }
+
+    public LongBuffer getTimestamps() {
+        return timestamps.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return the trajectory index holding the given uniqueId, or -1 if the store does not contain it
+     */
+    public int indexOf(int uniqueId) {
+        int low = 0;
+        int high = sortedUniqueIds.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (sortedUniqueIds[middle] < uniqueId) {
+                low = middle + 1;
+            } else if (sortedUniqueIds[middle] > uniqueId) {
+                high = middle - 1;
+            } else {
+                return sortedTrajectoryIndices[middle];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the trajectory index at the given position when trajectories are ordered by ascending uniqueId
+     */
+    public int getTrajectoryAtSortedPosition(int position) {
+        return sortedTrajectoryIndices[position];
+    }
+
+    /**
+     * Materialises a single trajectory as Point objects, for callers that still need the object model.
+     */
+    public List<Point> getPoints(int trajectory) {
+        List<Point> points = new ArrayList<>(getLength(trajectory));
+        for (int i = getStart(trajectory); i < getEnd(trajectory); i++) {
+            points.add(new Point(
+                    OffsetDateTime.ofInstant(Instant.ofEpochMilli(timestamps.get(i)), ZoneOffset.UTC),
+                    latitudes.get(i),
+                    longitudes.get(i),
+                    uniqueIds[trajectory]
+            ));
+        }
+        return points;
+    }
+
+    private void sortIdentifiers() {
+        // Pack (uniqueId, trajectory) into one long so a primitive sort orders by id and keeps the position
+        long[] keys = new long[uniqueIds.length];
+        for (int i = 0; i < uniqueIds.length; i++) {
+            keys[i] = ((long) uniqueIds[i] << 32) | (i & 0xFFFFFFFFL);
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < keys.length; i++) {
+            sortedUniqueIds[i] = (int) (keys[i] >> 32);
+            sortedTrajectoryIndices[i] = (int) keys[i];
+        }
+    }
+
+    /**
+     * Collects fixes one at a time into growable primitive columns, in any order of uniqueId and time.
+     * Fixes are bucketed by uniqueId in a single pass with a primitive hash map, so build() needs no global sort:
+     * it lays the trajectories out in ascending uniqueId order and orders the fixes of each trajectory by timestamp.
+     * Input that already arrives clustered and ascending by uniqueId is kept in place.
+     */
+    public static class Builder {
+
+        private double[] latitudes = new double[1024];
+        private double[] longitudes = new double[1024];
+        private long[] timestamps = new long[1024];
+        private int[] pointTrajectories = new int[1024];
+        private int size;
+
+        private final IntIndexMap trajectoryIndices = new IntIndexMap();
+        private int[] trajectoryIds = new int[64];
+        private int[] trajectorySizes = new int[64];
+        private int previousTrajectory = -1;
+        private boolean clustered = true;
+        private boolean sortedById = true;
+
+        public Builder add(int uniqueId, double latitude, double longitude, long timestamp) {
+            if (size == latitudes.length) {
+                growPoints();
+            }
+            int trajectory = trajectoryIndices.getOrAdd(uniqueId);
+            if (trajectory == trajectoryIds.length) {
+                trajectoryIds = Arrays.copyOf(trajectoryIds, trajectory * 2);
+                trajectorySizes = Arrays.copyOf(trajectorySizes, trajectory * 2);
+            }
+            if (trajectory != previousTrajectory) {
+                if (trajectorySizes[trajectory] > 0) {
+                    clustered = false;
+                } else if (previousTrajectory >= 0 && trajectoryIds[previousTrajectory] > uniqueId) {
+                    sortedById = false;
+                }
+                previousTrajectory = trajectory;
+            }
+            trajectoryIds[trajectory] = uniqueId;
+            trajectorySizes[trajectory]++;
+
+            latitudes[size] = latitude;
+            longitudes[size] = longitude;
+            timestamps[size] = timestamp;
+            pointTrajectories[size] = trajectory;
+            size++;
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public TrajectoryStore build() {
+            int trajectoryCount = trajectoryIndices.size();
+            int[] uniqueIds = new int[trajectoryCount];
+            int[] offsets = new int[trajectoryCount + 1];
+            int[] trajectoryStarts = new int[trajectoryCount];
+
+            // Only the trajectories are sorted by id, never the fixes
+            long[] keys = new long[trajectoryCount];
+            for (int trajectory = 0; trajectory < trajectoryCount; trajectory++) {
+                keys[trajectory] = ((long) trajectoryIds[trajectory] << 32) | trajectory;
+            }
+            Arrays.sort(keys);
+            int next = 0;
+            for (int rank = 0; rank < trajectoryCount; rank++) {
+                int trajectory = (int) keys[rank];
+                uniqueIds[rank] = trajectoryIds[trajectory];
+                offsets[rank] = next;
+                trajectoryStarts[trajectory] = next;
+                next += trajectorySizes[trajectory];
+            }
+            offsets[trajectoryCount] = size;
+
+            double[] groupedLatitudes;
+            double[] groupedLongitudes;
+            long[] groupedTimestamps;
+            if (clustered && sortedById) {
+                groupedLatitudes = Arrays.copyOf(latitudes, size);
+                groupedLongitudes = Arrays.copyOf(longitudes, size);
+                groupedTimestamps = Arrays.copyOf(timestamps, size);
+            } else {
+                groupedLatitudes = new double[size];
+                groupedLongitudes = new double[size];
+                groupedTimestamps = new long[size];
+                for (int i = 0; i < size; i++) {
+                    int destination = trajectoryStarts[pointTrajectories[i]]++;
+                    groupedLatitudes[destination] = latitudes[i];
+                    groupedLongitudes[destination] = longitudes[i];
+                    groupedTimestamps[destination] = timestamps[i];
+                }
+            }
+
+            for (int trajectory = 0; trajectory < trajectoryCount; trajectory++) {
+                orderByTimestamp(groupedLatitudes, groupedLongitudes, groupedTimestamps, offsets[trajectory], offsets[trajectory + 1]);
+            }
+
+            return new TrajectoryStore(groupedLatitudes, groupedLongitudes, groupedTimestamps, uniqueIds, offsets);
+        }
+
+        /**
+         * Stable sort of one trajectory's fixes by timestamp, skipped when they already arrive in time order.
+         */
+        private void orderByTimestamp(double[] latitudes, double[] longitudes, long[] timestamps, int from, int to) {
+            boolean ordered = true;
+            for (int i = from + 1; i < to && ordered; i++) {
+                ordered = timestamps[i - 1] <= timestamps[i];
+            }
+            if (ordered) {
+                return;
+            }
+
+            int length = to - from;
+            int[] order = new int[length];
+            for (int i = 0; i < length; i++) {
+                order[i] = from + i;
+            }
+            mergeSort(order, new int[length], timestamps, 0, length);
+
+            double[] sortedLatitudes = new double[length];
+            double[] sortedLongitudes = new double[length];
+            long[] sortedTimestamps = new long[length];
+            for (int i = 0; i < length; i++) {
+                sortedLatitudes[i] = latitudes[order[i]];
+                sortedLongitudes[i] = longitudes[order[i]];
+                sortedTimestamps[i] = timestamps[order[i]];
+            }
+            System.arraycopy(sortedLatitudes, 0, latitudes, from, length);
+            System.arraycopy(sortedLongitudes, 0, longitudes, from, length);
+            System.arraycopy(sortedTimestamps, 0, timestamps, from, length);
+        }
+
+        private void mergeSort(int[] order, int[] scratch, long[] timestamps, int from, int to) {
+            if (to - from < 2) {
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            mergeSort(order, scratch, timestamps, from, middle);
+            mergeSort(order, scratch, timestamps, middle, to);
+
+            int left = from;
+            int right = middle;
+            for (int i = from; i < to; i++) {
+                if (right >= to || (left < middle && timestamps[order[left]] <= timestamps[order[right]])) {
+                    scratch[i] = order[left++];
+                } else {
+                    scratch[i] = order[right++];
+                }
+            }
+            System.arraycopy(scratch, from, order, from, to - from);
+        }
+
+        private void growPoints() {
+            int capacity = latitudes.length + (latitudes.length >> 1);
+            latitudes = Arrays.copyOf(latitudes, capacity);
+            longitudes = Arrays.copyOf(longitudes, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            pointTrajectories = Arrays.copyOf(pointTrajectories, capacity);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package model;
+
+import lombok.AllArgsConstructor;
+
+import java.util.Arrays;
+
+/**
+ * An optimal warping path as two parallel index arrays. The arrays are allocated for the longest possible path,
+ * rows + columns - 1 steps, and filled back to front while backtracking, so the path occupies their tail from start on
+ * and never needs reversing. Step s, counted from (0, 0), matches query fix getRow(s) with candidate fix getColumn(s).
+ */
+@AllArgsConstructor
+public class WarpingPath {
+
+    private final int[] rows;
+    private final int[] columns;
+    private final int start;
+
+    public int getLength() {
+        return rows.length - start;
+    }
+
+    public int getRow(int step) {
+        return rows[start + step];
+    }
+
+    public int getColumn(int step) {
+        return columns[start + step];
+    }
+
+    public int[] toRowArray() {
+        return Arrays.copyOfRange(rows, start, rows.length);
+    }
+
+    public int[] toColumnArray() {
+        return Arrays.copyOfRange(columns, start, columns.length);
+    }
+
+    @Override
+    public String toString() {
+        var builder = new StringBuilder("WarpingPath {");
+        for (int step = 0; step < getLength(); step++) {
+            builder.append(" (").append(getRow(step)).append(", ").append(getColumn(step)).append(')');
+        }
+        return builder.append(" }").toString();
+    }
+}
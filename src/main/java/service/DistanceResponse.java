@@ -0,0 +1,16 @@
+package service;
+
+import dtw.DistanceKernel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class DistanceResponse {
+
+    int queryId;
+    int candidateId;
+    double bandwidth;
+    DistanceKernel kernel;
+    double distance;
+}
@@ -0,0 +1,151 @@
+package service;
+
+import dtw.DistanceKernel;
+import lombok.Value;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of pairwise DTW results, keyed by both trajectories' uniqueIds, the bandwidth and the kernel.
+ * Keys are spread over independently locked segments, each an access-ordered LinkedHashMap that evicts its least
+ * recently used entry beyond its share of the capacity, so eviction is LRU per segment rather than globally.
+ * Two threads missing the same key at once both compute it, and the later result wins; results are deterministic,
+ * so that only costs the duplicate work.
+ */
+public class PairwiseResultCache<V> {
+
+    private static final int MAX_SEGMENT_COUNT = 16;
+
+    private final Segment<V>[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param capacity the most results kept, 0 to disable caching. Small capacities get fewer segments, a power of two
+     *                 no larger than the capacity, so every segment can hold at least one result
+     */
+    @SuppressWarnings("unchecked")
+    public PairwiseResultCache(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative");
+        }
+        int segmentCount = Math.max(1, Integer.highestOneBit(Math.min(capacity, MAX_SEGMENT_COUNT)));
+        segments = new Segment[segmentCount];
+        // The shares add up to exactly the capacity
+        for (int segment = 0; segment < segmentCount; segment++) {
+            int segmentCapacity = capacity / segmentCount + (segment < capacity % segmentCount ? 1 : 0);
+            segments[segment] = new Segment<>(segmentCapacity, evictions);
+        }
+    }
+
+    /**
+     * A lookup that never computes, cheap enough for the event loop. Only hits are counted, as a miss is expected to
+     * be followed by get, which counts it.
+     * @return the cached result for the key, or null
+     */
+    public V getIfPresent(Key key) {
+        var segment = segmentOf(key);
+        V value;
+        synchronized (segment) {
+            value = segment.get(key);
+        }
+        if (value != null) {
+            hits.increment();
+        }
+        return value;
+    }
+
+    /**
+     * @return the cached result for the key, or the computed one, which is then cached
+     */
+    public V get(Key key, Supplier<V> computation) {
+        var segment = segmentOf(key);
+        V value;
+        synchronized (segment) {
+            value = segment.get(key);
+        }
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+        misses.increment();
+        value = computation.get();
+        if (segment.capacity > 0) {
+            synchronized (segment) {
+                segment.put(key, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Empties the cache. A get already computing when this runs still caches its result afterwards.
+     */
+    public void invalidateAll() {
+        for (var segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (var segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    private Segment<V> segmentOf(Key key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+    }
+
+    @Value
+    public static class Key {
+        int queryId;
+        int candidateId;
+        double bandwidth;
+        DistanceKernel kernel;
+    }
+
+    private static class Segment<V> extends LinkedHashMap<Key, V> {
+
+        private final int capacity;
+        private final LongAdder evictions;
+
+        Segment(int capacity, LongAdder evictions) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, V> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package service;
+
+import io.smallrye.mutiny.Uni;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs query computations off the event loop on a fixed pool with a bounded queue. The pool defaults to one thread
+ * per core, since every query is CPU-bound, and a full queue rejects new queries instead of letting latency grow
+ * without bound.
+ */
+@ApplicationScoped
+public class QueryExecutor {
+
+    @ConfigProperty(name = "dtw.query.threads", defaultValue = "0")
+    int threads;
+
+    @ConfigProperty(name = "dtw.query.queue-size", defaultValue = "256")
+    int queueSize;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    void start() {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        var threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                0,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    var thread = new Thread(runnable, "dtw-query-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return the computation's result, computed on the pool once subscribed to. Fails with a
+     * RejectedExecutionException when the queue is full
+     */
+    public <T> Uni<T> submit(Supplier<T> computation) {
+        return Uni.createFrom().item(computation).runSubscriptionOn(executor);
+    }
+}
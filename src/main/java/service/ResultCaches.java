@@ -0,0 +1,54 @@
+package service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import lombok.Getter;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+
+/**
+ * The query service's result caches: distances, which are small and cached generously, and warping paths, which hold
+ * one index pair per path step. Their hits, misses, evictions and sizes are exported as dtw.cache.* meters, tagged
+ * with the cache name.
+ * The TrajectoryIndex loads its store once and never changes it, so cached results never go stale and nothing
+ * invalidates them; entries only leave by eviction.
+ */
+@ApplicationScoped
+public class ResultCaches {
+
+    @ConfigProperty(name = "dtw.cache.distances.capacity", defaultValue = "100000")
+    int distanceCapacity;
+
+    @ConfigProperty(name = "dtw.cache.paths.capacity", defaultValue = "1000")
+    int pathCapacity;
+
+    @Getter
+    private PairwiseResultCache<Double> distances;
+    @Getter
+    private PairwiseResultCache<WarpingPathResponse> paths;
+
+    @PostConstruct
+    void start() {
+        distances = register("distances", new PairwiseResultCache<>(distanceCapacity));
+        paths = register("paths", new PairwiseResultCache<>(pathCapacity));
+    }
+
+    private static <V> PairwiseResultCache<V> register(String name, PairwiseResultCache<V> cache) {
+        FunctionCounter.builder("dtw.cache.hits", cache, PairwiseResultCache::getHits)
+                .tag("cache", name)
+                .register(Metrics.globalRegistry);
+        FunctionCounter.builder("dtw.cache.misses", cache, PairwiseResultCache::getMisses)
+                .tag("cache", name)
+                .register(Metrics.globalRegistry);
+        FunctionCounter.builder("dtw.cache.evictions", cache, PairwiseResultCache::getEvictions)
+                .tag("cache", name)
+                .register(Metrics.globalRegistry);
+        Gauge.builder("dtw.cache.size", cache, PairwiseResultCache::size)
+                .tag("cache", name)
+                .register(Metrics.globalRegistry);
+        return cache;
+    }
+}
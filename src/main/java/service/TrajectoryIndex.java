@@ -0,0 +1,73 @@
+package service;
+
+import io.quarkus.runtime.StartupEvent;
+import model.MappedTrajectoryFile;
+import model.TrajectoryStore;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import utility.FileUtility;
+import utility.Simplification;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.ws.rs.NotFoundException;
+
+import static utility.ProcessingUtility.*;
+
+/**
+ * The trajectory dataset the query service answers from, loaded once at startup. Either a CSV export, streamed into
+ * the store, or a binary file written by MappedTrajectoryFile, which is recognised by its extension.
+ * The trajectories are simplified as configured before anything queries them, and the coordinate columns the kernels
+ * read are prepared during loading, so the first query pays no setup either.
+ */
+@ApplicationScoped
+public class TrajectoryIndex {
+
+    private static final Logger LOG = Logger.getLogger(TrajectoryIndex.class);
+    private static final String BINARY_EXTENSION = ".trj";
+
+    @ConfigProperty(name = "dtw.dataset.file")
+    String file;
+
+    @ConfigProperty(name = "dtw.dataset.ignore-header", defaultValue = "true")
+    boolean ignoreHeader;
+
+    @ConfigProperty(name = "dtw.dataset.simplification", defaultValue = "NONE")
+    Simplification simplification;
+
+    @ConfigProperty(name = "dtw.dataset.simplification-parameter", defaultValue = "0")
+    double simplificationParameter;
+
+    private volatile TrajectoryStore store;
+
+    void onStart(@Observes StartupEvent event) {
+        long started = System.nanoTime();
+        var loaded = file.endsWith(BINARY_EXTENSION)
+                ? MappedTrajectoryFile.open(FileUtility.buildFilePath(file)).asStore()
+                : readTrajectoryStore(file, ignoreHeader);
+        var simplified = simplification.apply(loaded, simplificationParameter);
+        store = simplified.getStore();
+        LOG.infof("Loaded %d trajectories of %d points from %s in %d ms",
+                store.getTrajectoryCount(), store.getPointCount(), file, (System.nanoTime() - started) / 1_000_000);
+        if (simplification != Simplification.NONE) {
+            LOG.infof("%s kept %d of %d points, a compression ratio of %.1f",
+                    simplification, simplified.getSimplifiedPoints(), simplified.getOriginalPoints(), simplified.getCompressionRatio());
+        }
+    }
+
+    public TrajectoryStore getStore() {
+        return store;
+    }
+
+    /**
+     * @return the trajectory index of the uniqueId
+     * @throws NotFoundException if the dataset holds no trajectory with it
+     */
+    public int indexOf(int uniqueId) {
+        int trajectory = store.indexOf(uniqueId);
+        if (trajectory < 0) {
+            throw new NotFoundException("no trajectory with uniqueId " + uniqueId);
+        }
+        return trajectory;
+    }
+}
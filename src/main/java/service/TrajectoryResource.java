@@ -0,0 +1,162 @@
+package service;
+
+import dtw.DistanceKernel;
+import dtw.DtwEngine;
+import dtw.FastDtw;
+import dtw.SimilaritySearch;
+import io.smallrye.mutiny.Uni;
+import model.FastDtwResult;
+import model.SearchResult;
+import org.jboss.resteasy.reactive.RestResponse;
+import org.jboss.resteasy.reactive.server.ServerExceptionMapper;
+
+import javax.inject.Inject;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import java.util.EnumMap;
+import java.util.concurrent.RejectedExecutionException;
+
+import static utility.Instrumentation.*;
+import static utility.MathUtility.*;
+
+/**
+ * DTW queries over the preloaded TrajectoryIndex, addressed by uniqueId. The event loop only parses the request and
+ * looks it up in the ResultCaches, so repeated pairs are answered without queueing; the DTW itself runs on the
+ * QueryExecutor's pool, where every thread keeps its own engines and their row buffers.
+ * The bandwidth is relative, as in computeConstraintRegion. Distances and warping paths are cached per pair,
+ * bandwidth and kernel.
+ */
+@Path("/trajectories")
+@Produces(MediaType.APPLICATION_JSON)
+public class TrajectoryResource {
+
+    private static final ThreadLocal<EnumMap<DistanceKernel, DtwEngine>> ENGINES =
+            ThreadLocal.withInitial(() -> new EnumMap<>(DistanceKernel.class));
+
+    @Inject
+    TrajectoryIndex index;
+
+    @Inject
+    QueryExecutor executor;
+
+    @Inject
+    ResultCaches caches;
+
+    @GET
+    @Path("/{queryId}/distance/{candidateId}")
+    public Uni<DistanceResponse> distance(
+            @PathParam("queryId") int queryId,
+            @PathParam("candidateId") int candidateId,
+            @QueryParam("bandwidth") @DefaultValue("0.1") double bandwidth,
+            @QueryParam("kernel") @DefaultValue("HAVERSINE") DistanceKernel kernel) {
+        long started = System.nanoTime();
+        validateBandwidth(bandwidth);
+        int query = index.indexOf(queryId);
+        int candidate = index.indexOf(candidateId);
+        var key = new PairwiseResultCache.Key(queryId, candidateId, bandwidth, kernel);
+        Double cached = caches.getDistances().getIfPresent(key);
+        if (cached != null) {
+            recordQueryLatency(PAIRWISE_DISTANCE, started);
+            return Uni.createFrom().item(new DistanceResponse(queryId, candidateId, bandwidth, kernel, cached));
+        }
+        // Timed from arrival, so the time spent queueing for a pool thread counts too
+        return executor.submit(() -> {
+            double distance = caches.getDistances().get(key, () -> {
+                var store = index.getStore();
+                var region = computeConstraintRegionBounds(store.getLength(query), store.getLength(candidate), bandwidth);
+                return engine(kernel).distance(store, query, candidate, region);
+            });
+            return new DistanceResponse(queryId, candidateId, bandwidth, kernel, distance);
+        }).invoke(() -> recordQueryLatency(PAIRWISE_DISTANCE, started));
+    }
+
+    @GET
+    @Path("/{queryId}/path/{candidateId}")
+    public Uni<WarpingPathResponse> warpingPath(
+            @PathParam("queryId") int queryId,
+            @PathParam("candidateId") int candidateId,
+            @QueryParam("bandwidth") @DefaultValue("0.1") double bandwidth,
+            @QueryParam("kernel") @DefaultValue("HAVERSINE") DistanceKernel kernel) {
+        long started = System.nanoTime();
+        validateBandwidth(bandwidth);
+        int query = index.indexOf(queryId);
+        int candidate = index.indexOf(candidateId);
+        var key = new PairwiseResultCache.Key(queryId, candidateId, bandwidth, kernel);
+        var cached = caches.getPaths().getIfPresent(key);
+        if (cached != null) {
+            recordQueryLatency(WARPING_PATH, started);
+            return Uni.createFrom().item(cached);
+        }
+        return executor.submit(() -> caches.getPaths().get(key, () -> {
+            var store = index.getStore();
+            int querySize = store.getLength(query);
+            int candidateSize = store.getLength(candidate);
+            var region = computeConstraintRegionBounds(querySize, candidateSize, bandwidth);
+            var cumulativeCostMatrix = engine(kernel).cumulativeCostMatrix(store, query, candidate, region);
+            double distance = cumulativeCostMatrix.get(querySize - 1, candidateSize - 1);
+            if (distance == Double.POSITIVE_INFINITY) {
+                throw new BadRequestException("the band does not connect both trajectories' last fixes");
+            }
+            var path = DtwEngine.warpingPath(querySize - 1, candidateSize - 1, cumulativeCostMatrix);
+            return new WarpingPathResponse(queryId, candidateId, bandwidth, kernel, distance, path.toRowArray(), path.toColumnArray());
+        })).invoke(() -> recordQueryLatency(WARPING_PATH, started));
+    }
+
+    /**
+     * Unbanded DTW approximated by FastDtw, in time linear in the trajectory lengths. A larger radius gets closer to
+     * the exact distance at the price of latency. Not cached, as it is meant for pairs too long to compute exactly.
+     */
+    @GET
+    @Path("/{queryId}/approximate-distance/{candidateId}")
+    public Uni<FastDtwResult> approximateDistance(
+            @PathParam("queryId") int queryId,
+            @PathParam("candidateId") int candidateId,
+            @QueryParam("radius") @DefaultValue("10") int radius,
+            @QueryParam("kernel") @DefaultValue("HAVERSINE") DistanceKernel kernel) {
+        if (radius < 0) {
+            throw new BadRequestException("radius must not be negative");
+        }
+        int query = index.indexOf(queryId);
+        int candidate = index.indexOf(candidateId);
+        return executor.submit(() -> new FastDtw(engine(kernel), radius).distance(index.getStore(), query, candidate));
+    }
+
+    /**
+     * @return the k trajectories closest to the query under banded DTW, the query itself excluded
+     */
+    @GET
+    @Path("/{queryId}/neighbours")
+    public Uni<SearchResult> nearestNeighbours(
+            @PathParam("queryId") int queryId,
+            @QueryParam("k") @DefaultValue("5") int nearestNeighbours,
+            @QueryParam("bandwidth") @DefaultValue("0.1") double bandwidth,
+            @QueryParam("kernel") @DefaultValue("HAVERSINE") DistanceKernel kernel) {
+        validateBandwidth(bandwidth);
+        if (nearestNeighbours < 1) {
+            throw new BadRequestException("k must be at least 1");
+        }
+        int query = index.indexOf(queryId);
+        return executor.submit(() -> new SimilaritySearch(index.getStore(), bandwidth, engine(kernel)).search(query, nearestNeighbours));
+    }
+
+    @ServerExceptionMapper
+    public RestResponse<String> mapRejection(RejectedExecutionException exception) {
+        return RestResponse.status(RestResponse.Status.SERVICE_UNAVAILABLE, "the query queue is full, retry later");
+    }
+
+    private static DtwEngine engine(DistanceKernel kernel) {
+        return ENGINES.get().computeIfAbsent(kernel, DtwEngine::new);
+    }
+
+    private static void validateBandwidth(double bandwidth) {
+        if (!(bandwidth >= 0 && bandwidth <= 1)) {
+            throw new BadRequestException("bandwidth must lie in [0, 1]");
+        }
+    }
+}
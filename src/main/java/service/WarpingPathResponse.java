@@ -0,0 +1,22 @@
+package service;
+
+import dtw.DistanceKernel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The DTW distance of two trajectories together with its optimal warping path from the first fixes to the last.
+ * Step s of the path matches query fix queryFixes[s] with candidate fix candidateFixes[s].
+ */
+@Getter
+@AllArgsConstructor
+public class WarpingPathResponse {
+
+    int queryId;
+    int candidateId;
+    double bandwidth;
+    DistanceKernel kernel;
+    double distance;
+    int[] queryFixes;
+    int[] candidateFixes;
+}
@@ -4,29 +4,76 @@ import com.opencsv.CSVReader;
 import lombok.SneakyThrows;
 import lombok.experimental.UtilityClass;
 
-import java.io.FileReader;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.function.Consumer;
 
 @UtilityClass
 public class FileUtility {
 
     private final String PROJECT_DIR = System.getProperty("user.dir");
-    private final String BASE_DIR = "\\src\\main\\resources\\data\\";
+    private final Path BASE_DIR = Path.of("src", "main", "resources", "data");
+    private final int READ_BUFFER_SIZE = 1 << 20;
 
     @SneakyThrows
     public List<String[]> readFile(String file, boolean ignoreHeader) {
-        var filereader = new FileReader(buildFilePath(file));
-        var csvReader = new CSVReader(filereader);
-        var readFile = csvReader.readAll();
+        try (var csvReader = new CSVReader(openFile(file))) {
+            var readFile = csvReader.readAll();
 
-        if (ignoreHeader) {
-            readFile = readFile.subList(1, readFile.size());
+            if (ignoreHeader) {
+                readFile = readFile.subList(1, readFile.size());
+            }
+
+            return readFile;
         }
+    }
 
-        return readFile;
+    /**
+     * Reads the file one row at a time through a 1 MiB buffer, so only the current row is ever held as strings.
+     * A row the consumer cannot parse fails the read with the file and line it came from.
+     * @return the number of rows handed to the consumer
+     */
+    @SneakyThrows
+    public long streamFile(String file, boolean ignoreHeader, Consumer<String[]> rowConsumer) {
+        try (var csvReader = new CSVReader(openFile(file))) {
+            if (ignoreHeader) {
+                csvReader.readNext();
+            }
+
+            long rows = 0;
+            String[] row;
+            while ((row = csvReader.readNext()) != null) {
+                try {
+                    rowConsumer.accept(row);
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException("malformed row at line " + csvReader.getLinesRead() + " of " + file + ": " + e.getMessage(), e);
+                }
+                rows++;
+            }
+            return rows;
+        }
     }
 
-    private String buildFilePath(String fileName) {
-        return PROJECT_DIR + "\\" + BASE_DIR + "\\" + fileName;
+    @SneakyThrows
+    private BufferedReader openFile(String file) {
+        return new BufferedReader(
+                new InputStreamReader(Files.newInputStream(buildFilePath(file)), StandardCharsets.UTF_8),
+                READ_BUFFER_SIZE
+        );
+    }
+
+    /**
+     * Absolute paths are used as given, anything else is looked up in the bundled data directory.
+     */
+    public Path buildFilePath(String fileName) {
+        var path = Path.of(fileName);
+        if (path.isAbsolute()) {
+            return path;
+        }
+        return Path.of(PROJECT_DIR).resolve(BASE_DIR).resolve(path);
     }
 }
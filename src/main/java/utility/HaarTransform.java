@@ -0,0 +1,59 @@
+package utility;
+
+import java.util.InputMismatchException;
+
+/**
+ * Discrete Haar wavelet transform over primitive arrays, with the same layout and arithmetic as
+ * MathUtility.discreteHaarWaveletTransform: the overall average first, then the detail coefficients from the coarsest
+ * level to the finest, each pair contributing (a + b) / 2 and (a - b) / 2.
+ * A transform keeps a scratch buffer of half the series length between calls and allocates nothing once it is large
+ * enough, so keep one instance per thread.
+ */
+public class HaarTransform {
+
+    private double[] scratch = new double[0];
+
+    /**
+     * Transforms the series in place.
+     */
+    public void transform(double[] series) {
+        transform(series, 0, series, 0, series.length);
+    }
+
+    /**
+     * Transforms input[inputOffset..inputOffset + length) into output[outputOffset..]. Input and output may be the
+     * same array at the same offset, which transforms in place; the input is left untouched otherwise.
+     */
+    public void transform(double[] input, int inputOffset, double[] output, int outputOffset, int length) {
+        validateLength(length);
+        ensureCapacity(length / 2);
+
+        // The first level reads the input, every coarser level works on the averages left in the output
+        double[] source = input;
+        int sourceOffset = inputOffset;
+        for (int size = length / 2; size >= 1; size /= 2) {
+            for (int i = 0; i < size; i++) {
+                double a = source[sourceOffset + i * 2];
+                double b = source[sourceOffset + i * 2 + 1];
+                // Averages overwrite positions that are already read, the differences wait in scratch
+                output[outputOffset + i] = (a + b) / 2;
+                scratch[i] = (a - b) / 2;
+            }
+            System.arraycopy(scratch, 0, output, outputOffset + size, size);
+            source = output;
+            sourceOffset = outputOffset;
+        }
+    }
+
+    private static void validateLength(int length) {
+        if (length < 2 || Integer.bitCount(length) != 1) {
+            throw new InputMismatchException("the input Haar array did not have length 2^k");
+        }
+    }
+
+    private void ensureCapacity(int size) {
+        if (scratch.length < size) {
+            scratch = new double[size];
+        }
+    }
+}
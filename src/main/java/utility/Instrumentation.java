@@ -0,0 +1,132 @@
+package utility;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.experimental.UtilityClass;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and timers of the algorithms, registered with Micrometer's global registry. Inside the Quarkus app that
+ * registry forwards to Prometheus, served at /q/metrics; in a plain main method it has no backends and every
+ * recording is a no-op.
+ * Callers count locally and record once per call, e.g. once per DTW distance or once per search round, so nothing
+ * here runs per cell or per record.
+ */
+@UtilityClass
+public class Instrumentation {
+
+    public final String SIMILARITY_SEARCH = "similarity";
+    public final String STEPWISE_SEARCH = "stepwise";
+    public final String MAPPED_STEPWISE_SEARCH = "mapped-stepwise";
+    public final String PAIRWISE_DISTANCE = "distance";
+    public final String WARPING_PATH = "path";
+
+    private final Counter DTW_CELLS = Counter.builder("dtw.cells.evaluated")
+            .description("Cumulative cost matrix cells computed by DtwEngine")
+            .register(Metrics.globalRegistry);
+    private final Counter PRUNED_BY_KIM = cascadeCounter("kim");
+    private final Counter PRUNED_BY_KEOGH = cascadeCounter("keogh");
+    private final Counter ABANDONED_DTW = cascadeCounter("abandoned");
+    private final Counter[] PRUNED_BY_LEVEL = new Counter[Integer.SIZE];
+    private final Counter INGEST_ROWS = Counter.builder("ingest.rows")
+            .description("CSV rows streamed into trajectory stores")
+            .register(Metrics.globalRegistry);
+    private final Timer INGEST_DURATION = Timer.builder("ingest.duration")
+            .description("Time spent reading a CSV file into a trajectory store")
+            .register(Metrics.globalRegistry);
+    private final AtomicLong INGEST_ROWS_PER_SECOND = Metrics.globalRegistry.gauge("ingest.rows.per.second", new AtomicLong());
+    private final Timer SIMILARITY_LATENCY = queryTimer(SIMILARITY_SEARCH);
+    private final Timer STEPWISE_LATENCY = queryTimer(STEPWISE_SEARCH);
+    private final Timer MAPPED_STEPWISE_LATENCY = queryTimer(MAPPED_STEPWISE_SEARCH);
+    private final Timer PAIRWISE_DISTANCE_LATENCY = queryTimer(PAIRWISE_DISTANCE);
+    private final Timer WARPING_PATH_LATENCY = queryTimer(WARPING_PATH);
+    private final DistributionSummary MAPPED_STEPWISE_BATCH_SIZE = DistributionSummary.builder("query.batch.size")
+            .description("Queries answered together by one call, whose latency is recorded once")
+            .tag("search", MAPPED_STEPWISE_SEARCH)
+            .register(Metrics.globalRegistry);
+
+    public void recordCellsEvaluated(long cells) {
+        DTW_CELLS.increment(cells);
+    }
+
+    /**
+     * Records how many candidates each stage of SimilaritySearch's lower-bound cascade rejected in one search.
+     */
+    public void recordCascadePruning(int prunedByKim, int prunedByKeogh, int abandonedDtw) {
+        PRUNED_BY_KIM.increment(prunedByKim);
+        PRUNED_BY_KEOGH.increment(prunedByKeogh);
+        ABANDONED_DTW.increment(abandonedDtw);
+    }
+
+    /**
+     * Records the candidates one round of a stepwise search pruned at a bottom-up Haar level.
+     */
+    public void recordStepwisePruning(int level, int pruned) {
+        Counter counter = PRUNED_BY_LEVEL[level];
+        if (counter == null) {
+            // Registering twice returns the same counter, so racing threads are harmless
+            counter = Counter.builder("stepwise.candidates.pruned")
+                    .description("Candidates pruned by a stepwise k-NN round, per bottom-up Haar level")
+                    .tag("level", Integer.toString(level))
+                    .register(Metrics.globalRegistry);
+            PRUNED_BY_LEVEL[level] = counter;
+        }
+        counter.increment(pruned);
+    }
+
+    /**
+     * Records one ingest of rows that started at startNanos, a System.nanoTime reading.
+     */
+    public void recordIngest(long rows, long startNanos) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        INGEST_ROWS.increment(rows);
+        INGEST_DURATION.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        if (elapsedNanos > 0) {
+            INGEST_ROWS_PER_SECOND.set(rows * TimeUnit.SECONDS.toNanos(1) / elapsedNanos);
+        }
+    }
+
+    /**
+     * Records the latency of one query that started at startNanos, a System.nanoTime reading.
+     * @param search one of SIMILARITY_SEARCH, STEPWISE_SEARCH, PAIRWISE_DISTANCE and WARPING_PATH
+     */
+    public void recordQueryLatency(String search, long startNanos) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        Timer timer = switch (search) {
+            case SIMILARITY_SEARCH -> SIMILARITY_LATENCY;
+            case STEPWISE_SEARCH -> STEPWISE_LATENCY;
+            case PAIRWISE_DISTANCE -> PAIRWISE_DISTANCE_LATENCY;
+            case WARPING_PATH -> WARPING_PATH_LATENCY;
+            default -> throw new IllegalArgumentException("unknown search " + search);
+        };
+        timer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records one MappedStepwiseSearch batch that started at startNanos. The batch is a single latency sample, so the
+     * timer counts calls rather than queries, and its size goes to query.batch.size.
+     */
+    public void recordBatchLatency(long startNanos, int queries) {
+        MAPPED_STEPWISE_LATENCY.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        MAPPED_STEPWISE_BATCH_SIZE.record(queries);
+    }
+
+    private Counter cascadeCounter(String stage) {
+        return Counter.builder("similarity.candidates.pruned")
+                .description("Candidates rejected by a stage of the similarity search cascade")
+                .tag("stage", stage)
+                .register(Metrics.globalRegistry);
+    }
+
+    private Timer queryTimer(String search) {
+        return Timer.builder("query.latency")
+                .description("Latency of k-NN, pairwise distance and warping path queries")
+                .tag("search", search)
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry);
+    }
+}
@@ -0,0 +1,94 @@
+package utility;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from int keys to dense indices 0, 1, 2, ... handed out in insertion order.
+ * Lets a single pass bucket records by an int id without boxing a key per record.
+ */
+public class IntIndexMap {
+
+    private static final int ABSENT = -1;
+
+    private int[] keys;
+    private int[] indices;
+    private int size;
+
+    public IntIndexMap() {
+        this(16);
+    }
+
+    public IntIndexMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        keys = new int[capacity];
+        indices = new int[capacity];
+        Arrays.fill(indices, ABSENT);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the index of the key, or -1 if it was never added
+     */
+    public int get(int key) {
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            if (indices[slot] == ABSENT || keys[slot] == key) {
+                return indices[slot];
+            }
+        }
+    }
+
+    /**
+     * @return the index of the key, assigning the next free index if the key is new
+     */
+    public int getOrAdd(int key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (indices[slot] != ABSENT) {
+            if (keys[slot] == key) {
+                return indices[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        indices[slot] = size;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+        return size - 1;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldIndices = indices;
+        keys = new int[oldKeys.length * 2];
+        indices = new int[oldIndices.length * 2];
+        Arrays.fill(indices, ABSENT);
+
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldIndices[i] != ABSENT) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (indices[slot] != ABSENT) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                indices[slot] = oldIndices[i];
+            }
+        }
+    }
+
+    private int hash(int key) {
+        // Murmur3 finaliser, so consecutive ids spread over the table
+        int h = key;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
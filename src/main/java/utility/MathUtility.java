@@ -1,7 +1,11 @@
 package utility;
 
 import lombok.experimental.UtilityClass;
+import model.ConstraintRegion;
+import model.HaarEnergyIndex;
 import model.Point;
+import model.TrajectoryStore;
+import org.jboss.logging.Logger;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -11,11 +15,12 @@ import java.util.List;
 import java.util.Random;
 import java.util.stream.IntStream;
 
-import static utility.LogUtility.*;
+import static model.PreparedCoordinates.EARTH_RADIUS;
 
 @UtilityClass
 public class MathUtility {
 
+    private final Logger LOG = Logger.getLogger(MathUtility.class);
     private final Random random = new Random();
 
     /**
@@ -25,16 +30,29 @@ public class MathUtility {
      * @return The distance in kilometers, with up to 0.5% imprecision.
      */
     public double getDistance(Point from, Point to) {
-        final int earthRadius = 6371;
+        return getDistance(from.getLatitude(), from.getLongitude(), to.getLatitude(), to.getLongitude());
+    }
 
-        var deltaLatitude = Math.toRadians(to.getLatitude() - from.getLatitude());
-        var deltaLongitude = Math.toRadians(to.getLongitude() - from.getLongitude());
-        var cosineLatitude = Math.cos(Math.toRadians(from.getLatitude()));
-        var cosineLongitude = Math.cos(Math.toRadians(from.getLongitude()));
+    /**
+     * Haversine distance between two fixes of a columnar store, without materialising any Point.
+     * @param store the store holding both fixes
+     * @param from the store index of the first fix
+     * @param to the store index of the second fix
+     * @return The distance in kilometers, with up to 0.5% imprecision.
+     */
+    public double getDistance(TrajectoryStore store, int from, int to) {
+        return getDistance(store.getLatitude(from), store.getLongitude(from), store.getLatitude(to), store.getLongitude(to));
+    }
+
+    public double getDistance(double fromLatitude, double fromLongitude, double toLatitude, double toLongitude) {
+        var deltaLatitude = Math.toRadians(toLatitude - fromLatitude);
+        var deltaLongitude = Math.toRadians(toLongitude - fromLongitude);
+        var cosineFromLatitude = Math.cos(Math.toRadians(fromLatitude));
+        var cosineToLatitude = Math.cos(Math.toRadians(toLatitude));
 
-        var chordLengthMeasure = sineSquared(deltaLatitude / 2) + cosineLatitude * cosineLongitude * sineSquared(deltaLongitude /2);
+        var chordLengthMeasure = sineSquared(deltaLatitude / 2) + cosineFromLatitude * cosineToLatitude * sineSquared(deltaLongitude /2);
         var angularDistance = 2 * Math.atan2(Math.sqrt(chordLengthMeasure), Math.sqrt(1 - chordLengthMeasure));
-        return earthRadius * angularDistance;
+        return EARTH_RADIUS * angularDistance;
     }
 
     private double sineSquared(double radians) {
@@ -70,6 +88,10 @@ public class MathUtility {
         return random.nextInt(0, inputList.size() - 1);
     }
 
+    public int generateIndexFrom(TrajectoryStore store) {
+        return random.nextInt(0, store.getTrajectoryCount() - 1);
+    }
+
     public List<List<Integer>> computeConstraintRegion(int sampleSize, int randomSize, int bandwidth) {
         List<List<Integer>> bandwidthIndeces = new ArrayList<>();
         List<Integer> lowerBounds = new ArrayList<>();
@@ -83,8 +105,8 @@ public class MathUtility {
             diagonalY = (double) i / (sampleSize - 1) * randomSize;
             lowerBound = (int) Math.round(diagonalY - bandwidth);
             upperBound = (int) Math.round(diagonalY + bandwidth);
-            if (isDebugging()) {
-                System.out.println("diagonalY: " + diagonalY);
+            if (LOG.isTraceEnabled()) {
+                LOG.tracef("diagonalY: %s", Double.valueOf(diagonalY));
             }
 
             if (lowerBound < 0) {
@@ -110,6 +132,33 @@ public class MathUtility {
         List<List<Integer>> bandwidthIndeces = new ArrayList<>();
         List<Integer> lowerBounds = new ArrayList<>();
         List<Integer> upperBounds = new ArrayList<>();
+        int[][] bounds = computeConstraintBounds(sampleSize, randomSize, bandwidth);
+
+        for (int i = 0; i < sampleSize; i++) {
+            lowerBounds.add(bounds[0][i]);
+            upperBounds.add(bounds[1][i]);
+        }
+        bandwidthIndeces.add(lowerBounds);
+        bandwidthIndeces.add(upperBounds);
+
+        return bandwidthIndeces;
+    }
+
+    /**
+     * Same band as computeConstraintRegion, built straight into a ConstraintRegion without boxing any bound.
+     */
+    public ConstraintRegion computeConstraintRegionBounds(int sampleSize, int randomSize, double bandwidth) {
+        int[][] bounds = computeConstraintBounds(sampleSize, randomSize, bandwidth);
+        for (int i = 0; i < sampleSize; i++) {
+            bounds[0][i] = Math.max(0, bounds[0][i]);
+            bounds[1][i] = Math.min(randomSize - 1, bounds[1][i]);
+        }
+        return new ConstraintRegion(bounds[0], bounds[1], randomSize);
+    }
+
+    private int[][] computeConstraintBounds(int sampleSize, int randomSize, double bandwidth) {
+        int[] lowerBounds = new int[sampleSize];
+        int[] upperBounds = new int[sampleSize];
         double diagonalY;
         double relativeBandwidth = ((bandwidth * randomSize) / 2) + 1;
         int lowerBound;
@@ -120,7 +169,6 @@ public class MathUtility {
             diagonalY = (double) i / (sampleSize - 1) * randomSize;
             lowerBound = (int) Math.round(diagonalY - relativeBandwidth);
             upperBound = (int) Math.round(diagonalY + relativeBandwidth);
-//            System.out.println("diagonalY: " + diagonalY);
 
             if (lowerBound < 0) {
                 lowerBound = 0;
@@ -133,37 +181,27 @@ public class MathUtility {
                 upperBound = randomSize;
             }
 
-            lowerBounds.add(lowerBound);
-            upperBounds.add(upperBound);
+            lowerBounds[i] = lowerBound;
+            upperBounds[i] = upperBound;
         }
-        bandwidthIndeces.add(lowerBounds);
-        bandwidthIndeces.add(upperBounds);
-
-        return bandwidthIndeces;
+        return new int[][] {lowerBounds, upperBounds};
     }
 
+    /**
+     * Boxed convenience over HaarTransform, which bulk code should use directly. The input list is left untouched.
+     */
     public List<Double> discreteHaarWaveletTransform(List<Double> input) {
         if (!validateLength(input)) {
             throw new InputMismatchException("the input Haar array did not have length 2^k");
         }
-        List<Double> output = new ArrayList<>(input);
-        for (int size = input.size() / 2; ; size /= 2) {
+        double[] series = input.stream().mapToDouble(Double::doubleValue).toArray();
+        new HaarTransform().transform(series);
 
-            for (int i = 0; i < size; i++) {
-                double sum = (input.get(i * 2) + input.get(i * 2 + 1)) / 2;
-                double difference = (input.get(i * 2) - input.get(i * 2 + 1)) / 2;
-                output.set(i, sum);
-                output.set(size + i, difference);
-            }
-            if (size == 1) {
-                return output;
-            }
-
-            // Copy elements for next iteration
-            for (int i = 0; i < size; i++) {
-                input.set(i, output.get(i));
-            }
+        List<Double> output = new ArrayList<>(series.length);
+        for (double coefficient : series) {
+            output.add(coefficient);
         }
+        return output;
     }
 
     public double sumOfSquares(List<Double> input) {
@@ -199,8 +237,11 @@ public class MathUtility {
 
         double sum = 0;
         for (int currentLevel = haarTreeDepth; currentLevel <= getBinaryExponent(timeSeriesHaar); currentLevel++) {
-            sum += bottomUpHaarBranchEuclideanDistance(timeSeriesHaar, queryRecordHaar, currentLevel);
-            printIfDebugging("At level " + currentLevel + " and depth " + haarTreeDepth + ". Adding sum " + bottomUpHaarBranchEuclideanDistance(timeSeriesHaar, queryRecordHaar, currentLevel));
+            double levelSum = bottomUpHaarBranchEuclideanDistance(timeSeriesHaar, queryRecordHaar, currentLevel);
+            sum += levelSum;
+            if (LOG.isTraceEnabled()) {
+                LOG.tracef("At level %d and depth %d. Adding sum %s", currentLevel, haarTreeDepth, Double.valueOf(levelSum));
+            }
         }
         return sum;
     }
@@ -214,17 +255,17 @@ public class MathUtility {
     private double euclideanDistanceAtLevel(List<Double> timeSeriesHaar, List<Double> queryRecordHaar, int currentLevel, List<Integer> coefficientIndeces) {
         double sum = 0;
         for (Integer i : coefficientIndeces) {
-            if (isDebugging()) {
-                printIndentedLine(
-                        "Adding sum " + (Math.pow(Math.abs(timeSeriesHaar.get(i) - queryRecordHaar.get(i)), 2))
-                        + " at index " + i
-                        + " with level " + currentLevel);
+            double squaredDifference = Math.pow(Math.abs(timeSeriesHaar.get(i) - queryRecordHaar.get(i)), 2);
+            if (LOG.isTraceEnabled()) {
+                LOG.tracef("Adding sum %s at index %d with level %d", Double.valueOf(squaredDifference), i, currentLevel);
             }
-            sum += Math.pow(Math.abs(timeSeriesHaar.get(i) - queryRecordHaar.get(i)), 2);
+            sum += squaredDifference;
         }
 
         int haarCoefficient = (int) Math.pow(2, currentLevel);
-        printIfDebugging("Resulting in haarCoefficient 2^" + currentLevel + " * " + sum);
+        if (LOG.isTraceEnabled()) {
+            LOG.tracef("Resulting in haarCoefficient 2^%d * %s", currentLevel, Double.valueOf(sum));
+        }
 
         return haarCoefficient * sum;
     }
@@ -255,42 +296,80 @@ public class MathUtility {
     }
 
     public double computeLowerBounds(List<Double> querySeriesHaar, List<Double> timeSeriesHaar, int depth) {
+        return computeLowerBounds(
+                querySeriesHaar,
+                timeSeriesHaar,
+                depth,
+                bottomUpPreComputeSumToDepth(timeSeriesHaar, depth),
+                bottomUpPreComputeSumToDepth(querySeriesHaar, depth),
+                bottomUpSumDataPointsUpToLevel(timeSeriesHaar, depth)
+        );
+    }
+
+    /**
+     * Same as above, with the record's query-independent sums read from a HaarEnergyIndex instead of recomputed.
+     * @param sigma_rl_query bottomUpPreComputeSumToDepth(querySeriesHaar, depth), which is the same for every record,
+     *                       so a search round computes it once
+     */
+    public double computeLowerBounds(List<Double> querySeriesHaar, List<Double> timeSeriesHaar, int depth, double sigma_rl_query, HaarEnergyIndex index, int record) {
+        return computeLowerBounds(
+                querySeriesHaar,
+                timeSeriesHaar,
+                depth,
+                index.getWeightedEnergyBelow(record, depth),
+                sigma_rl_query,
+                index.getEnergyBelow(record, depth)
+        );
+    }
+
+    private double computeLowerBounds(List<Double> querySeriesHaar, List<Double> timeSeriesHaar, int depth, double sigma_rl_p, double sigma_rl_query, double sigma_rp) {
         double Drk = bottomUpHaarTreeEuclideanDistance(timeSeriesHaar, querySeriesHaar, depth);
-        double sigma_rl_p = bottomUpPreComputeSumToDepth(timeSeriesHaar, depth);
-        double sigma_rl_query = bottomUpPreComputeSumToDepth(querySeriesHaar, depth);
-        double sigma_rp = bottomUpSumDataPointsUpToLevel(timeSeriesHaar, depth);
         double sigma_re_q = computeSumQuantityEqualSignsUpToDepth(querySeriesHaar, timeSeriesHaar, depth);
         double lowerBound = Drk + sigma_rl_p + sigma_rl_query - 2 * Math.sqrt(sigma_rp * sigma_re_q);
 
-        if (isDebugging()) {
-            printCurrentStep();
-            printIndentedLine("Drk is " + Drk);
-            printIndentedLine("sigma_rl_p is "+ sigma_rl_p);
-            printIndentedLine("sigma_rl_query is "+ sigma_rl_query);
-            printIndentedLine("sigma_rp is " + sigma_rp);
-            printIndentedLine("sigma_re_q is " + sigma_re_q);
-            printIndentedLine("lower bound for depth " + depth + " is " + lowerBound);
+        if (LOG.isTraceEnabled()) {
+            LOG.tracef("computeLowerBounds: Drk is %s, sigma_rl_p is %s, sigma_rl_query is %s, sigma_rp is %s, sigma_re_q is %s", Double.valueOf(Drk), Double.valueOf(sigma_rl_p), Double.valueOf(sigma_rl_query), Double.valueOf(sigma_rp), Double.valueOf(sigma_re_q));
+            LOG.tracef("lower bound for depth %d is %s", depth, Double.valueOf(lowerBound));
         }
 
         return lowerBound;
     }
 
     public double computeUpperBounds(List<Double> querySeriesHaar, List<Double> timeSeriesHaar, int depth) {
+        return computeUpperBounds(
+                querySeriesHaar,
+                timeSeriesHaar,
+                depth,
+                bottomUpPreComputeSumToDepth(timeSeriesHaar, depth),
+                bottomUpPreComputeSumToDepth(querySeriesHaar, depth),
+                bottomUpSumDataPointsUpToLevel(timeSeriesHaar, depth)
+        );
+    }
+
+    /**
+     * Same as above, with the record's query-independent sums read from a HaarEnergyIndex instead of recomputed.
+     * @param sigma_rl_query bottomUpPreComputeSumToDepth(querySeriesHaar, depth), which is the same for every record,
+     *                       so a search round computes it once
+     */
+    public double computeUpperBounds(List<Double> querySeriesHaar, List<Double> timeSeriesHaar, int depth, double sigma_rl_query, HaarEnergyIndex index, int record) {
+        return computeUpperBounds(
+                querySeriesHaar,
+                timeSeriesHaar,
+                depth,
+                index.getWeightedEnergyBelow(record, depth),
+                sigma_rl_query,
+                index.getEnergyBelow(record, depth)
+        );
+    }
+
+    private double computeUpperBounds(List<Double> querySeriesHaar, List<Double> timeSeriesHaar, int depth, double sigma_rl_p, double sigma_rl_query, double sigma_rp) {
         double Drk = bottomUpHaarTreeEuclideanDistance(timeSeriesHaar, querySeriesHaar, depth);
-        double sigma_rl_p = bottomUpPreComputeSumToDepth(timeSeriesHaar, depth);
-        double sigma_rl_query = bottomUpPreComputeSumToDepth(querySeriesHaar, depth);
-        double sigma_rp = bottomUpSumDataPointsUpToLevel(timeSeriesHaar, depth);
         double sigma_ro_q = computeSumQuantityOppositeSignsUpToDepth(querySeriesHaar, timeSeriesHaar, depth);
         double upperBound = Drk + sigma_rl_p + sigma_rl_query + 2 * Math.sqrt(sigma_rp * sigma_ro_q);
 
-        if (isDebugging()) {
-            printCurrentStep();
-            printIndentedLine("Drk is " + Drk);
-            printIndentedLine("sigma_rl_p is "+ sigma_rl_p);
-            printIndentedLine("sigma_rl_query is "+ sigma_rl_query);
-            printIndentedLine("sigma_rp is " + sigma_rp);
-            printIndentedLine("sigma_re_q is " + sigma_ro_q);
-            printIndentedLine("upper bound for depth " + depth + " is " + upperBound);
+        if (LOG.isTraceEnabled()) {
+            LOG.tracef("computeUpperBounds: Drk is %s, sigma_rl_p is %s, sigma_rl_query is %s, sigma_rp is %s, sigma_ro_q is %s", Double.valueOf(Drk), Double.valueOf(sigma_rl_p), Double.valueOf(sigma_rl_query), Double.valueOf(sigma_rp), Double.valueOf(sigma_ro_q));
+            LOG.tracef("upper bound for depth %d is %s", depth, Double.valueOf(upperBound));
         }
 
         return upperBound;
@@ -308,7 +387,9 @@ public class MathUtility {
             currentDepth--;
         }
 
-        printIfDebugging("pre-computed sum up to depth " + depth + " is " + sum);
+        if (LOG.isTraceEnabled()) {
+            LOG.tracef("pre-computed sum up to depth %d is %s", depth, Double.valueOf(sum));
+        }
         return sum;
     }
 
@@ -319,10 +400,15 @@ public class MathUtility {
 
         double sum = 0;
         for (int currentLevel = 1; currentLevel < depth; currentLevel++) {
-            sum += bottomUpPreComputeSumQuantityAtLevelWithHaarCoefficient(timeSeriesHaar, currentLevel);
-            printIfDebugging("At level " + currentLevel + " with depth " + depth + ". Adding sum " + bottomUpPreComputeSumQuantityAtLevelWithHaarCoefficient(timeSeriesHaar, currentLevel));
+            double levelSum = bottomUpPreComputeSumQuantityAtLevelWithHaarCoefficient(timeSeriesHaar, currentLevel);
+            sum += levelSum;
+            if (LOG.isTraceEnabled()) {
+                LOG.tracef("At level %d with depth %d. Adding sum %s", currentLevel, depth, Double.valueOf(levelSum));
+            }
+        }
+        if (LOG.isTraceEnabled()) {
+            LOG.tracef("pre-computed sum up to depth %d is %s", depth, Double.valueOf(sum));
         }
-        printIfDebugging("pre-computed sum up to depth " + depth + " is " + sum);
 
         return sum;
     }
@@ -338,7 +424,9 @@ public class MathUtility {
             sum += preComputeSumQuantityAtLevel(timeSeriesHaar, currentDepth);
             currentDepth--;
         }
-        printIfDebugging("pre-computed sum up to depth " + depth + " is " + sum);
+        if (LOG.isTraceEnabled()) {
+            LOG.tracef("pre-computed sum up to depth %d is %s", depth, Double.valueOf(sum));
+        }
         
         return sum;
     }
@@ -383,9 +471,8 @@ public class MathUtility {
         for (int currentLevel = 1; currentLevel <= binaryExponent; currentLevel++) {
             sum += computeSumQuantityAtLevelEqualSigns(querySeriesHaar, timeSeriesHaar, currentLevel);
         }
-        if (isDebugging()) {
-            printCurrentStep();
-            printIndentedLine("Sigma equal signs is " + sum);
+        if (LOG.isTraceEnabled()) {
+            LOG.tracef("Sigma equal signs is %s", Double.valueOf(sum));
         }
         return sum;
     }
@@ -402,9 +489,8 @@ public class MathUtility {
         for (int currentLevel = 1; currentLevel <= binaryExponent; currentLevel++) {
             sum += computeSumQuantityAtLevelOppositeSigns(querySeriesHaar, timeSeriesHaar, currentLevel);
         }
-        if (isDebugging()) {
-            printCurrentStep();
-            printIndentedLine("Sigma equal signs is " + sum);
+        if (LOG.isTraceEnabled()) {
+            LOG.tracef("Sigma opposite signs is %s", Double.valueOf(sum));
         }
         return sum;
     }
@@ -420,9 +506,8 @@ public class MathUtility {
         for (int currentLevel = 1; currentLevel < depth; currentLevel++) {
             sum += computeSumQuantityAtLevelEqualSigns(querySeriesHaar, timeSeriesHaar, currentLevel);
         }
-        if (isDebugging()) {
-            printCurrentStep();
-            printIndentedLine("sum quantity equal signs at depth " + depth + " is " + sum);
+        if (LOG.isTraceEnabled()) {
+            LOG.tracef("sum quantity equal signs at depth %d is %s", depth, Double.valueOf(sum));
         }
         return sum;
     }
@@ -438,9 +523,8 @@ public class MathUtility {
         for (int currentLevel = 1; currentLevel < depth; currentLevel++) {
             sum += computeSumQuantityAtLevelOppositeSigns(querySeriesHaar, timeSeriesHaar, currentLevel);
         }
-        if (isDebugging()) {
-            printCurrentStep();
-            printIndentedLine("sum quantity opposite signs at depth " + depth + " is " + sum);
+        if (LOG.isTraceEnabled()) {
+            LOG.tracef("sum quantity opposite signs at depth %d is %s", depth, Double.valueOf(sum));
         }
         return sum;
     }
@@ -482,9 +566,8 @@ public class MathUtility {
             }
             sum += Math.pow(2, currentLevel) * innerSum;
         }
-        if (isDebugging()) {
-            printCurrentStep();
-            printIndentedLine("Sigma was " + sum);
+        if (LOG.isTraceEnabled()) {
+            LOG.tracef("Sigma was %s", Double.valueOf(sum));
         }
         return sum;
     }
@@ -2,13 +2,11 @@ package utility;
 
 import lombok.experimental.UtilityClass;
 import model.Point;
+import model.TrajectoryStore;
 
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
-import java.time.OffsetDateTime;
 import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
 
 @UtilityClass
@@ -16,8 +14,9 @@ public class ProcessingUtility {
 
     private static final Random random = new Random();
 
-    private final DateTimeFormatter dtFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss", Locale.US)
-            .withZone(ZoneId.of("Europe/Copenhagen"));
+    private final ZoneId ZONE = ZoneId.of("Europe/Copenhagen");
+    // id, latitude, longitude, track_id, time
+    private final int COLUMN_COUNT = 5;
 
     public List<List<Point>> transformFileToTrajectories(List<String[]> file) {
 
@@ -26,27 +25,57 @@ public class ProcessingUtility {
         return mapPointsToTrajectories(points);
     }
 
+    /**
+     * Streams the file straight into the primitive columns of a store, without materialising the rows or any Point.
+     */
+    public TrajectoryStore readTrajectoryStore(String file, boolean ignoreHeader) {
+        long started = System.nanoTime();
+        var builder = new TrajectoryStore.Builder();
+        var timestampParser = new TimestampParser(ZONE);
+        long rows = FileUtility.streamFile(file, ignoreHeader, row -> {
+            if (row.length < COLUMN_COUNT) {
+                throw new InputMismatchException("expected " + COLUMN_COUNT + " columns but found " + row.length);
+            }
+            builder.add(
+                    Integer.parseInt(row[3]),
+                    Double.parseDouble(row[1]),
+                    Double.parseDouble(row[2]),
+                    timestampParser.parseEpochMillis(row[4])
+            );
+        });
+        var store = builder.build();
+        Instrumentation.recordIngest(rows, started);
+        return store;
+    }
+
+    /**
+     * Buckets the points by uniqueId in one pass, then orders each trajectory by timestamp and the trajectories by
+     * uniqueId. Only the trajectories are sorted as a whole, and TimSort is linear on fixes that arrive in time order.
+     */
     private List<List<Point>> mapPointsToTrajectories(List<Point> points) {
+        var trajectoryIndices = new IntIndexMap();
         List<List<Point>> trajectories = new ArrayList<>();
-        int trackId = Integer.MIN_VALUE;
-        List<Point> sortedList = points.stream().sorted(Comparator.comparing(Point::getUniqueId)).toList();
-        points = new ArrayList<>();
-        for (Point point : sortedList) {
-            if (trackId != Integer.MIN_VALUE && trackId != point.getUniqueId()) {
-                trajectories.add(points);
-                points = new ArrayList<>();
+        for (Point point : points) {
+            int trajectory = trajectoryIndices.getOrAdd(point.getUniqueId());
+            if (trajectory == trajectories.size()) {
+                trajectories.add(new ArrayList<>());
             }
-            trackId = point.getUniqueId();
-            points.add(point);
+            trajectories.get(trajectory).add(point);
+        }
+
+        for (List<Point> trajectory : trajectories) {
+            trajectory.sort(Comparator.comparing(Point::getTimestamp));
         }
+        trajectories.sort(Comparator.comparingInt(trajectory -> trajectory.get(0).getUniqueId()));
         return trajectories;
     }
 
     private List<Point> createPointsFromFile(List<String[]> file) {
         List<Point> points = new ArrayList<>();
+        var timestampParser = new TimestampParser(ZONE);
         for (String[] row : file) {
             var point = new Point(
-                    OffsetDateTime.from(ZonedDateTime.parse(row[4], dtFormat)),
+                    timestampParser.parseOffsetDateTime(row[4]),
                     Double.parseDouble(row[1]),
                     Double.parseDouble(row[2]),
                     Integer.parseInt(row[3])
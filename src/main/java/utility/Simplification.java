@@ -0,0 +1,202 @@
+package utility;
+
+import model.SimplificationResult;
+import model.TrajectoryStore;
+
+import static model.PreparedCoordinates.EARTH_RADIUS;
+import static utility.MathUtility.*;
+
+/**
+ * Shrinks every trajectory of a store before DTW, whose cost grows with the product of both lengths. Each mode reads
+ * a single parameter, whose meaning it documents, and keeps the uniqueIds and the order of the trajectories.
+ */
+public enum Simplification {
+
+    /**
+     * Keeps every fix; the parameter is ignored.
+     */
+    NONE {
+        @Override
+        public SimplificationResult apply(TrajectoryStore store, double parameter) {
+            return new SimplificationResult(store, store.getPointCount(), store.getPointCount());
+        }
+
+        @Override
+        void simplify(TrajectoryStore store, int trajectory, double parameter, TrajectoryStore.Builder output) {
+            int uniqueId = store.getUniqueId(trajectory);
+            for (int index = store.getStart(trajectory); index < store.getEnd(trajectory); index++) {
+                output.add(uniqueId, store.getLatitude(index), store.getLongitude(index), store.getTimestamp(index));
+            }
+        }
+    },
+
+    /**
+     * Douglas-Peucker: keeps the fewest fixes such that no dropped fix lies further than the parameter, a tolerance in
+     * metres, from the segment between the kept fixes around it. Runs of fixes from a vehicle standing still collapse
+     * to their ends.
+     */
+    DOUGLAS_PEUCKER {
+        @Override
+        void simplify(TrajectoryStore store, int trajectory, double parameter, TrajectoryStore.Builder output) {
+            if (parameter < 0) {
+                throw new IllegalArgumentException("the tolerance must not be negative");
+            }
+            int start = store.getStart(trajectory);
+            int length = store.getLength(trajectory);
+            boolean[] kept = new boolean[length];
+            kept[0] = true;
+            kept[length - 1] = true;
+
+            // An explicit stack of segments, as a long trajectory would overflow the call stack
+            int[] stack = new int[2 * length];
+            int size = 0;
+            stack[size++] = 0;
+            stack[size++] = length - 1;
+            while (size > 0) {
+                int last = stack[--size];
+                int first = stack[--size];
+                int farthest = -1;
+                double farthestDistance = parameter;
+                for (int fix = first + 1; fix < last; fix++) {
+                    double distance = segmentDistanceInMetres(store, start + first, start + last, start + fix);
+                    if (distance > farthestDistance) {
+                        farthest = fix;
+                        farthestDistance = distance;
+                    }
+                }
+                if (farthest >= 0) {
+                    kept[farthest] = true;
+                    stack[size++] = first;
+                    stack[size++] = farthest;
+                    stack[size++] = farthest;
+                    stack[size++] = last;
+                }
+            }
+
+            int uniqueId = store.getUniqueId(trajectory);
+            for (int fix = 0; fix < length; fix++) {
+                if (kept[fix]) {
+                    int index = start + fix;
+                    output.add(uniqueId, store.getLatitude(index), store.getLongitude(index), store.getTimestamp(index));
+                }
+            }
+        }
+    },
+
+    /**
+     * Resamples at a fixed interval, the parameter, in seconds: one fix per interval from the first fix on, each
+     * linearly interpolated between the recorded fixes around it, plus the last recorded fix.
+     */
+    RESAMPLE {
+        @Override
+        void simplify(TrajectoryStore store, int trajectory, double parameter, TrajectoryStore.Builder output) {
+            long interval = Math.round(parameter * 1000);
+            if (interval <= 0) {
+                throw new IllegalArgumentException("the interval must be positive");
+            }
+            int uniqueId = store.getUniqueId(trajectory);
+            int index = store.getStart(trajectory);
+            int last = store.getEnd(trajectory) - 1;
+            long lastTimestamp = store.getTimestamp(last);
+
+            long timestamp = store.getTimestamp(index);
+            for (; timestamp < lastTimestamp; timestamp += interval) {
+                while (store.getTimestamp(index + 1) <= timestamp) {
+                    index++;
+                }
+                long before = store.getTimestamp(index);
+                double share = (double) (timestamp - before) / (store.getTimestamp(index + 1) - before);
+                output.add(
+                        uniqueId,
+                        store.getLatitude(index) + share * (store.getLatitude(index + 1) - store.getLatitude(index)),
+                        store.getLongitude(index) + share * (store.getLongitude(index + 1) - store.getLongitude(index)),
+                        timestamp
+                );
+            }
+            output.add(uniqueId, store.getLatitude(last), store.getLongitude(last), lastTimestamp);
+        }
+    },
+
+    /**
+     * Piecewise aggregate approximation to a target length, the parameter: the fixes are split into that many runs of
+     * equal length, give or take one, and every run is replaced by its mean fix. Shorter trajectories are kept as they are.
+     */
+    PIECEWISE_AGGREGATE {
+        @Override
+        void simplify(TrajectoryStore store, int trajectory, double parameter, TrajectoryStore.Builder output) {
+            int targetLength = (int) parameter;
+            if (targetLength < 1) {
+                throw new IllegalArgumentException("the target length must be at least 1");
+            }
+            int uniqueId = store.getUniqueId(trajectory);
+            int start = store.getStart(trajectory);
+            int length = store.getLength(trajectory);
+            int segments = Math.min(targetLength, length);
+            for (int segment = 0; segment < segments; segment++) {
+                int from = start + (int) ((long) segment * length / segments);
+                int to = start + (int) ((long) (segment + 1) * length / segments);
+                double latitudes = 0;
+                double longitudes = 0;
+                long timeOffsets = 0;
+                for (int index = from; index < to; index++) {
+                    latitudes += store.getLatitude(index);
+                    longitudes += store.getLongitude(index);
+                    timeOffsets += store.getTimestamp(index) - store.getTimestamp(from);
+                }
+                int count = to - from;
+                output.add(uniqueId, latitudes / count, longitudes / count, store.getTimestamp(from) + timeOffsets / count);
+            }
+        }
+    };
+
+    /**
+     * @return a new store with every trajectory simplified, and how much smaller it is
+     * @throws IllegalArgumentException if the parameter is out of range for the mode
+     */
+    public SimplificationResult apply(TrajectoryStore store, double parameter) {
+        var output = new TrajectoryStore.Builder();
+        for (int trajectory = 0; trajectory < store.getTrajectoryCount(); trajectory++) {
+            simplify(store, trajectory, parameter, output);
+        }
+        return new SimplificationResult(output.build(), store.getPointCount(), output.size());
+    }
+
+    /**
+     * Appends the simplified fixes of one trajectory, which has at least one fix, to the output in time order.
+     */
+    abstract void simplify(TrajectoryStore store, int trajectory, double parameter, TrajectoryStore.Builder output);
+
+    /**
+     * Distance from a fix to the great-circle segment between two others: the cross-track distance when the fix
+     * projects onto the segment, else the distance to the nearer end.
+     */
+    private static double segmentDistanceInMetres(TrajectoryStore store, int from, int to, int fix) {
+        double segmentLength = getDistance(store, from, to);
+        double fromFix = getDistance(store, from, fix);
+        if (segmentLength == 0) {
+            return fromFix * 1000;
+        }
+        double angle = bearing(store, from, fix) - bearing(store, from, to);
+        if (Math.cos(angle) < 0) {
+            // Behind the start of the segment
+            return fromFix * 1000;
+        }
+        double angularFromFix = fromFix / EARTH_RADIUS;
+        double crossTrack = Math.asin(Math.sin(angularFromFix) * Math.sin(angle));
+        double alongTrack = Math.acos(Math.max(-1, Math.min(1, Math.cos(angularFromFix) / Math.cos(crossTrack))));
+        if (alongTrack * EARTH_RADIUS > segmentLength) {
+            return getDistance(store, to, fix) * 1000;
+        }
+        return Math.abs(crossTrack) * EARTH_RADIUS * 1000;
+    }
+
+    private static double bearing(TrajectoryStore store, int from, int to) {
+        double fromLatitude = Math.toRadians(store.getLatitude(from));
+        double toLatitude = Math.toRadians(store.getLatitude(to));
+        double deltaLongitude = Math.toRadians(store.getLongitude(to) - store.getLongitude(from));
+        return Math.atan2(
+                Math.sin(deltaLongitude) * Math.cos(toLatitude),
+                Math.cos(fromLatitude) * Math.sin(toLatitude) - Math.sin(fromLatitude) * Math.cos(toLatitude) * Math.cos(deltaLongitude)
+        );
+    }
+}
@@ -0,0 +1,157 @@
+package utility;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Parser for the fixed "yyyy-MM-dd HH:mm:ss" timestamps of the GPS exports, interpreted in a single zone.
+ * Digits are read straight from the string, and the zone offset is cached per local day, so a regular row costs
+ * no allocation and no zone-rule lookup. Days within 14 hours of an offset transition, and any text that is not a
+ * strictly valid timestamp, go through java.time instead, which keeps the results identical to
+ * ZonedDateTime.parse with the same pattern and zone.
+ * The cache is not synchronised, so use one parser per thread.
+ */
+public class TimestampParser {
+
+    private static final int CACHE_SIZE = 64;
+    private static final int IRREGULAR_DAY = Integer.MIN_VALUE;
+    private static final long SECONDS_PER_DAY = 86_400;
+    private static final long TRANSITION_MARGIN = 14 * 3_600;
+
+    private final ZoneId zone;
+    private final ZoneRules rules;
+    private final DateTimeFormatter fallbackFormat;
+
+    private final long[] cachedDays = new long[CACHE_SIZE];
+    private final int[] cachedOffsets = new int[CACHE_SIZE];
+
+    public TimestampParser(ZoneId zone) {
+        this.zone = zone;
+        this.rules = zone.getRules();
+        this.fallbackFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss", Locale.US).withZone(zone);
+        Arrays.fill(cachedDays, Long.MIN_VALUE);
+    }
+
+    public long parseEpochMillis(String text) {
+        if (!hasFixedLayout(text)) {
+            return ZonedDateTime.parse(text, fallbackFormat).toInstant().toEpochMilli();
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 2);
+        int day = digits(text, 8, 2);
+        int hour = digits(text, 11, 2);
+        int minute = digits(text, 14, 2);
+        int second = digits(text, 17, 2);
+        if (!isValid(year, month, day, hour, minute, second)) {
+            return ZonedDateTime.parse(text, fallbackFormat).toInstant().toEpochMilli();
+        }
+
+        long epochDay = epochDay(year, month, day);
+        int offsetSeconds = offsetForDay(epochDay);
+        if (offsetSeconds == IRREGULAR_DAY) {
+            return ZonedDateTime.of(year, month, day, hour, minute, second, 0, zone).toInstant().toEpochMilli();
+        }
+        long localSeconds = epochDay * SECONDS_PER_DAY + hour * 3_600L + minute * 60L + second;
+        return (localSeconds - offsetSeconds) * 1_000;
+    }
+
+    public OffsetDateTime parseOffsetDateTime(String text) {
+        if (!hasFixedLayout(text)) {
+            return OffsetDateTime.from(ZonedDateTime.parse(text, fallbackFormat));
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 2);
+        int day = digits(text, 8, 2);
+        int hour = digits(text, 11, 2);
+        int minute = digits(text, 14, 2);
+        int second = digits(text, 17, 2);
+        if (!isValid(year, month, day, hour, minute, second)) {
+            return OffsetDateTime.from(ZonedDateTime.parse(text, fallbackFormat));
+        }
+
+        var localDateTime = LocalDateTime.of(year, month, day, hour, minute, second);
+        int offsetSeconds = offsetForDay(epochDay(year, month, day));
+        if (offsetSeconds == IRREGULAR_DAY) {
+            return ZonedDateTime.of(localDateTime, zone).toOffsetDateTime();
+        }
+        return OffsetDateTime.of(localDateTime, ZoneOffset.ofTotalSeconds(offsetSeconds));
+    }
+
+    private int offsetForDay(long epochDay) {
+        int slot = (int) (epochDay & (CACHE_SIZE - 1));
+        if (cachedDays[slot] != epochDay) {
+            cachedDays[slot] = epochDay;
+            cachedOffsets[slot] = computeOffsetForDay(epochDay);
+        }
+        return cachedOffsets[slot];
+    }
+
+    private int computeOffsetForDay(long epochDay) {
+        long dayStart = epochDay * SECONDS_PER_DAY;
+        if (!rules.isFixedOffset()) {
+            ZoneOffsetTransition transition = rules.nextTransition(Instant.ofEpochSecond(dayStart - TRANSITION_MARGIN));
+            if (transition != null && transition.toEpochSecond() < dayStart + SECONDS_PER_DAY + TRANSITION_MARGIN) {
+                return IRREGULAR_DAY;
+            }
+        }
+        return rules.getOffset(Instant.ofEpochSecond(dayStart)).getTotalSeconds();
+    }
+
+    private boolean hasFixedLayout(String text) {
+        if (text.length() != 19
+                || text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != ' '
+                || text.charAt(13) != ':' || text.charAt(16) != ':') {
+            return false;
+        }
+        for (int i = 0; i < 19; i++) {
+            if (i != 4 && i != 7 && i != 10 && i != 13 && i != 16 && (text.charAt(i) < '0' || text.charAt(i) > '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int digits(String text, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            value = value * 10 + (text.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    private boolean isValid(int year, int month, int day, int hour, int minute, int second) {
+        return year > 0
+                && month >= 1 && month <= 12
+                && day >= 1 && day <= lengthOfMonth(year, month)
+                && hour <= 23 && minute <= 59 && second <= 59;
+    }
+
+    private int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    /**
+     * Days since 1970-01-01 of a proleptic Gregorian date, see http://howardhinnant.github.io/date_algorithms.html
+     */
+    private long epochDay(int year, int month, int day) {
+        long shiftedYear = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(shiftedYear, 400);
+        long yearOfEra = shiftedYear - era * 400;
+        long dayOfYear = (153L * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - 719_468;
+    }
+}
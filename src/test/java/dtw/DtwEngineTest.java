@@ -0,0 +1,270 @@
+package dtw;
+
+import model.BandedMatrix;
+import model.ConstraintRegion;
+import model.DtwResult;
+import model.TrajectoryStore;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import utility.SeededData;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static utility.MathUtility.*;
+
+/**
+ * Checks the rolling-row engine against the textbook recurrence over a full rows-by-columns matrix, with the local
+ * costs taken from MathUtility.getDistance instead of a DistanceKernel.
+ */
+class DtwEngineTest {
+
+    private static final int[] LENGTHS = {1, 2, 17, 40, 63, 80};
+
+    private static TrajectoryStore store;
+
+    @BeforeAll
+    static void setUp() {
+        var walks = SeededData.trajectoryStore(LENGTHS.length, 80, 80, 3);
+        var builder = new TrajectoryStore.Builder();
+        for (int trajectory = 0; trajectory < LENGTHS.length; trajectory++) {
+            int start = walks.getStart(trajectory);
+            for (int fix = start; fix < start + LENGTHS[trajectory]; fix++) {
+                builder.add(trajectory, walks.getLatitude(fix), walks.getLongitude(fix), walks.getTimestamp(fix));
+            }
+        }
+        store = builder.build();
+    }
+
+    @Test
+    void unbandedDistanceMatchesTheFullMatrix() {
+        var engine = new DtwEngine();
+        for (int query = 0; query < store.getTrajectoryCount(); query++) {
+            for (int candidate = 0; candidate < store.getTrajectoryCount(); candidate++) {
+                var region = FastDtw.fullRegion(store.getLength(query), store.getLength(candidate));
+                assertCloseTo(fullMatrixDistance(query, candidate, region), engine.distance(store, query, candidate, region),
+                        query + " -> " + candidate);
+            }
+        }
+    }
+
+    /**
+     * Every pair, so the band is also checked for unequal lengths in both directions and for one-fix trajectories,
+     * whose band is a single row or column.
+     */
+    @ParameterizedTest
+    @ValueSource(doubles = {0, 0.05, 0.2, 1.0})
+    void bandedDistanceMatchesTheFullMatrix(double bandwidth) {
+        var engine = new DtwEngine();
+        for (int query = 0; query < store.getTrajectoryCount(); query++) {
+            for (int candidate = 0; candidate < store.getTrajectoryCount(); candidate++) {
+                var region = computeConstraintRegionBounds(store.getLength(query), store.getLength(candidate), bandwidth);
+                assertCloseTo(fullMatrixDistance(query, candidate, region), engine.distance(store, query, candidate, region),
+                        query + " -> " + candidate);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(doubles = {0, 0.05, 0.2, 1.0})
+    void cumulativeCostMatrixMatchesTheFullMatrixInsideTheBand(double bandwidth) {
+        var engine = new DtwEngine();
+        for (int query = 0; query < store.getTrajectoryCount(); query++) {
+            for (int candidate = 0; candidate < store.getTrajectoryCount(); candidate++) {
+                var region = computeConstraintRegionBounds(store.getLength(query), store.getLength(candidate), bandwidth);
+                double[][] expected = fullMatrix(query, candidate, region);
+                var matrix = engine.cumulativeCostMatrix(store, query, candidate, region);
+                assertEquals(region.getArea(), matrix.getValues().length);
+                for (int row = 0; row < expected.length; row++) {
+                    for (int column = 0; column < expected[row].length; column++) {
+                        assertCloseTo(expected[row][column], matrix.get(row, column),
+                                query + " -> " + candidate + " at (" + row + ", " + column + ")");
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void infiniteCutoffNeverAbandons() {
+        var engine = new DtwEngine();
+        for (int query = 0; query < store.getTrajectoryCount(); query++) {
+            for (int candidate = 0; candidate < store.getTrajectoryCount(); candidate++) {
+                var region = computeConstraintRegionBounds(store.getLength(query), store.getLength(candidate), 0.2);
+                var result = engine.distance(store, query, candidate, region, Double.POSITIVE_INFINITY);
+                assertEquals(engine.distance(store, query, candidate, region), result.getDistance());
+                assertFalse(result.isExceeded());
+                assertEquals(region.getArea(), result.getCellsEvaluated());
+                assertEquals(0, result.getPruningRate());
+            }
+        }
+    }
+
+    /**
+     * Every row holds a cell of the optimal path, so no row minimum exceeds the distance and a cutoff at or above it
+     * must run to the end.
+     */
+    @ParameterizedTest
+    @ValueSource(doubles = {1.0, 1.5})
+    void cutoffAtOrAboveTheDistanceNeverAbandons(double cutoffFactor) {
+        var engine = new DtwEngine();
+        for (int query = 0; query < store.getTrajectoryCount(); query++) {
+            for (int candidate = 0; candidate < store.getTrajectoryCount(); candidate++) {
+                var region = computeConstraintRegionBounds(store.getLength(query), store.getLength(candidate), 0.2);
+                double exact = engine.distance(store, query, candidate, region);
+                var result = engine.distance(store, query, candidate, region, exact * cutoffFactor);
+                assertEquals(exact, result.getDistance(), query + " -> " + candidate);
+                assertFalse(result.isExceeded(), query + " -> " + candidate);
+                assertEquals(region.getArea(), result.getCellsEvaluated());
+            }
+        }
+    }
+
+    @Test
+    void cutoffBelowTheDistanceAbandons() {
+        var engine = new DtwEngine();
+        for (int query = 2; query < store.getTrajectoryCount(); query++) {
+            for (int candidate = 2; candidate < store.getTrajectoryCount(); candidate++) {
+                if (query == candidate) {
+                    continue;
+                }
+                var region = computeConstraintRegionBounds(store.getLength(query), store.getLength(candidate), 0.2);
+                double exact = engine.distance(store, query, candidate, region);
+                var result = engine.distance(store, query, candidate, region, exact / 2);
+                assertTrue(result.isExceeded(), query + " -> " + candidate);
+                assertEquals(Double.POSITIVE_INFINITY, result.getDistance());
+                assertTrue(result.getCellsEvaluated() < region.getArea(), query + " -> " + candidate);
+                assertEquals(region.getArea(), result.getCellsInBand());
+            }
+        }
+    }
+
+    /**
+     * Two different walks never start on the same spot, so a zero cutoff is exceeded by the first row.
+     */
+    @Test
+    void pruningRateIsTheShareOfTheBandNeverEvaluated() {
+        var region = computeConstraintRegionBounds(store.getLength(4), store.getLength(5), 0.2);
+        var result = new DtwEngine().distance(store, 4, 5, region, 0);
+        assertTrue(result.isExceeded());
+        assertEquals(region.getWidth(0), result.getCellsEvaluated());
+        assertEquals(1 - (double) region.getWidth(0) / region.getArea(), result.getPruningRate());
+
+        assertEquals(0.75, new DtwResult(1, true, 25, 100).getPruningRate());
+        assertEquals(0, new DtwResult(0, false, 0, 0).getPruningRate());
+    }
+
+    @ParameterizedTest
+    @ValueSource(doubles = {0.05, 0.2, 1.0})
+    void warpingPathConnectsTheCornersAndCostsTheDistance(double bandwidth) {
+        var engine = new DtwEngine();
+        for (int query = 0; query < store.getTrajectoryCount(); query++) {
+            for (int candidate = 0; candidate < store.getTrajectoryCount(); candidate++) {
+                var region = computeConstraintRegionBounds(store.getLength(query), store.getLength(candidate), bandwidth);
+                double distance = engine.distance(store, query, candidate, region);
+                if (Double.isInfinite(distance)) {
+                    continue;
+                }
+                var path = engine.warpingPath(store, query, candidate, region);
+                String pair = query + " -> " + candidate;
+
+                int last = path.getLength() - 1;
+                assertEquals(0, path.getRow(0), pair);
+                assertEquals(0, path.getColumn(0), pair);
+                assertEquals(store.getLength(query) - 1, path.getRow(last), pair);
+                assertEquals(store.getLength(candidate) - 1, path.getColumn(last), pair);
+                assertArrayEquals(path.toRowArray(), IntStream.range(0, path.getLength()).map(path::getRow).toArray());
+                assertArrayEquals(path.toColumnArray(), IntStream.range(0, path.getLength()).map(path::getColumn).toArray());
+
+                double pathCost = getDistance(store, store.getStart(query), store.getStart(candidate));
+                for (int step = 1; step < path.getLength(); step++) {
+                    int rowStep = path.getRow(step) - path.getRow(step - 1);
+                    int columnStep = path.getColumn(step) - path.getColumn(step - 1);
+                    assertTrue(rowStep >= 0 && rowStep <= 1 && columnStep >= 0 && columnStep <= 1 && rowStep + columnStep > 0,
+                            pair + " steps by (" + rowStep + ", " + columnStep + ") at " + step);
+                    assertTrue(region.contains(path.getRow(step), path.getColumn(step)), pair + " leaves the band at " + step);
+                    pathCost += getDistance(store, store.getStart(query) + path.getRow(step), store.getStart(candidate) + path.getColumn(step));
+                }
+                assertCloseTo(distance, pathCost, pair);
+            }
+        }
+    }
+
+    /**
+     * The override fails the test if the distance-only run builds the band after all.
+     */
+    @Test
+    void distanceOnlySkipsTheMatrix() {
+        var region = computeConstraintRegionBounds(store.getLength(2), store.getLength(3), 0.2);
+        var distanceOnly = new DtwEngine() {
+            @Override
+            public BandedMatrix cumulativeCostMatrix(TrajectoryStore store, int queryTrajectory, int candidateTrajectory, ConstraintRegion region) {
+                return fail("the distance-only run built the cumulative cost matrix");
+            }
+        };
+        assertNull(BaseAlgorithm.cumulativeCostMatrixUnlessDistanceOnly(distanceOnly, store, 2, 3, region, true));
+
+        var matrix = BaseAlgorithm.cumulativeCostMatrixUnlessDistanceOnly(new DtwEngine(), store, 2, 3, region, false);
+        assertEquals(new DtwEngine().distance(store, 2, 3, region), matrix.get(store.getLength(2) - 1, store.getLength(3) - 1));
+    }
+
+    @Test
+    void oneFixAgainstOneFixIsTheirDistance() {
+        var region = FastDtw.fullRegion(1, 1);
+        double expected = getDistance(store, store.getStart(0), store.getStart(0));
+        assertEquals(expected, new DtwEngine().distance(store, 0, 0, region));
+        assertCloseTo(getDistance(store, store.getStart(0), store.getStart(1)) + getDistance(store, store.getStart(0), store.getStart(1) + 1),
+                new DtwEngine().distance(store, 0, 1, FastDtw.fullRegion(1, 2)), "one fix against two");
+    }
+
+    private static double fullMatrixDistance(int query, int candidate, ConstraintRegion region) {
+        double[][] matrix = fullMatrix(query, candidate, region);
+        return matrix[matrix.length - 1][matrix[0].length - 1];
+    }
+
+    /**
+     * D(i, j) = c(i, j) + min(D(i - 1, j - 1), D(i - 1, j), D(i, j - 1)) over every cell, with the cells outside the
+     * region left at infinity.
+     */
+    private static double[][] fullMatrix(int query, int candidate, ConstraintRegion region) {
+        int rows = store.getLength(query);
+        int columns = store.getLength(candidate);
+        double[][] matrix = new double[rows][columns];
+        for (double[] row : matrix) {
+            Arrays.fill(row, Double.POSITIVE_INFINITY);
+        }
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                if (!region.contains(i, j)) {
+                    continue;
+                }
+                double cheapestPredecessor = i == 0 && j == 0 ? 0 : Double.POSITIVE_INFINITY;
+                if (i > 0 && j > 0) {
+                    cheapestPredecessor = Math.min(cheapestPredecessor, matrix[i - 1][j - 1]);
+                }
+                if (i > 0) {
+                    cheapestPredecessor = Math.min(cheapestPredecessor, matrix[i - 1][j]);
+                }
+                if (j > 0) {
+                    cheapestPredecessor = Math.min(cheapestPredecessor, matrix[i][j - 1]);
+                }
+                matrix[i][j] = cheapestPredecessor + getDistance(store, store.getStart(query) + i, store.getStart(candidate) + j);
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * The kernel works on prepared radians and MathUtility on degrees, so finite costs may differ by rounding.
+     */
+    private static void assertCloseTo(double expected, double actual, String message) {
+        if (Double.isInfinite(expected)) {
+            assertEquals(expected, actual, message);
+        } else {
+            assertEquals(expected, actual, expected * 1e-9, message);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package dtw;
+
+import model.ConstraintRegion;
+import model.TrajectoryStore;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import utility.SeededData;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FastDtwTest {
+
+    private static final int MAXIMUM_LENGTH = 150;
+
+    private static TrajectoryStore store;
+
+    @BeforeAll
+    static void setUp() {
+        store = SeededData.trajectoryStore(12, 20, MAXIMUM_LENGTH, 24);
+    }
+
+    /**
+     * FastDtw returns the cost of a path inside its window, and the exact distance is the cheapest path of all.
+     */
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 2, 5, 10})
+    void approximationNeverUndercutsTheExactDistance(int radius) {
+        var engine = new DtwEngine();
+        var fastDtw = new FastDtw(engine, radius);
+        for (int query = 0; query < store.getTrajectoryCount(); query++) {
+            for (int candidate = 0; candidate < store.getTrajectoryCount(); candidate++) {
+                double exact = exactDistance(engine, query, candidate);
+                var approximate = fastDtw.distance(store, query, candidate);
+                assertTrue(approximate.getDistance() >= exact,
+                        query + " -> " + candidate + ": " + approximate.getDistance() + " < " + exact);
+            }
+        }
+    }
+
+    @Test
+    void largeRadiusIsExact() {
+        var engine = new DtwEngine();
+        var fastDtw = new FastDtw(engine, MAXIMUM_LENGTH);
+        for (int query = 0; query < store.getTrajectoryCount(); query++) {
+            for (int candidate = 0; candidate < store.getTrajectoryCount(); candidate++) {
+                var approximate = fastDtw.distance(store, query, candidate);
+                assertEquals(exactDistance(engine, query, candidate), approximate.getDistance());
+                assertEquals(1, approximate.getResolutions());
+            }
+        }
+    }
+
+    @Test
+    void coarseningShrinksTheCells() {
+        var result = new FastDtw(2).distance(store, 0, 1);
+        assertTrue(result.getResolutions() > 1);
+        assertTrue(result.getCellsEvaluated() < (long) store.getLength(0) * store.getLength(1));
+    }
+
+    /**
+     * An odd length leaves the last fine row or column to a single coarse cell; the window must still reach it, and
+     * every row must overlap the next so a path can step from one to the other.
+     */
+    @ParameterizedTest
+    @CsvSource({"0, 7, 9", "0, 15, 15", "1, 9, 16", "1, 33, 21", "3, 41, 27", "0, 2, 3"})
+    void projectedWindowIsMonotoneAndConnected(int radius, int rowSize, int columnSize) {
+        var builder = new TrajectoryStore.Builder();
+        var walks = SeededData.trajectoryStore(2, Math.max(rowSize, columnSize), Math.max(rowSize, columnSize), rowSize * 31L + columnSize);
+        for (int fix = 0; fix < rowSize; fix++) {
+            builder.add(0, walks.getLatitude(fix), walks.getLongitude(fix), walks.getTimestamp(fix));
+        }
+        for (int fix = 0; fix < columnSize; fix++) {
+            int index = walks.getStart(1) + fix;
+            builder.add(1, walks.getLatitude(index), walks.getLongitude(index), walks.getTimestamp(index));
+        }
+        var fine = builder.build();
+        var coarse = FastDtw.coarsen(fine, 0, 1);
+        var path = new DtwEngine().warpingPath(coarse, 0, 1, FastDtw.fullRegion(coarse.getLength(0), coarse.getLength(1)));
+
+        var window = FastDtw.projectWindow(path, rowSize, columnSize, radius);
+        assertEquals(rowSize, window.getRowSize());
+        assertEquals(0, window.getLowerBound(0));
+        assertEquals(columnSize - 1, window.getUpperBound(rowSize - 1));
+        for (int row = 0; row < rowSize; row++) {
+            assertTrue(window.getLowerBound(row) <= window.getUpperBound(row), "row " + row + " is empty");
+            assertTrue(window.getLowerBound(row) >= 0 && window.getUpperBound(row) < columnSize);
+            if (row > 0) {
+                assertTrue(window.getLowerBound(row - 1) <= window.getLowerBound(row), "lower bound falls at row " + row);
+                assertTrue(window.getUpperBound(row - 1) <= window.getUpperBound(row), "upper bound falls at row " + row);
+                assertTrue(window.getLowerBound(row) <= window.getUpperBound(row - 1) + 1, "row " + row + " is disconnected");
+            }
+        }
+        assertTrue(new DtwEngine().distance(fine, 0, 1, window) < Double.POSITIVE_INFINITY);
+    }
+
+    private static double exactDistance(DtwEngine engine, int query, int candidate) {
+        ConstraintRegion full = FastDtw.fullRegion(store.getLength(query), store.getLength(candidate));
+        return engine.distance(store, query, candidate, full);
+    }
+}
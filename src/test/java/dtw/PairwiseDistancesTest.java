@@ -0,0 +1,90 @@
+package dtw;
+
+import model.TrajectoryStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import utility.SeededData;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static utility.MathUtility.*;
+
+class PairwiseDistancesTest {
+
+    private static final double BANDWIDTH = 0.1;
+    private static final int EMPTY_TRAJECTORY = 5;
+
+    /**
+     * Tile sizes of 7 and 4 leave a partial tile along the edge of 23 trajectories, and 1 and 64 are the extremes.
+     */
+    @ParameterizedTest
+    @CsvSource({"7, 1", "7, 3", "4, 2", "1, 2", "64, 2"})
+    void tilesMatchASequentialLoop(int tileSize, int poolSize) {
+        var store = withEmptyTrajectory(SeededData.trajectoryStore(22, 5, 60, 6));
+        var pool = new ForkJoinPool(poolSize);
+        try {
+            var matrix = new PairwiseDistances(store, BANDWIDTH, DistanceKernel.HAVERSINE, tileSize, pool).compute();
+
+            var engine = new DtwEngine();
+            assertEquals(store.getTrajectoryCount(), matrix.getSize());
+            for (int query = 0; query < store.getTrajectoryCount(); query++) {
+                assertEquals(0, matrix.get(query, query));
+                for (int candidate = query + 1; candidate < store.getTrajectoryCount(); candidate++) {
+                    double expected = query == EMPTY_TRAJECTORY || candidate == EMPTY_TRAJECTORY
+                            ? Double.POSITIVE_INFINITY
+                            : engine.distance(store, query, candidate,
+                            computeConstraintRegionBounds(store.getLength(query), store.getLength(candidate), BANDWIDTH));
+                    assertEquals(expected, matrix.get(query, candidate), query + " -> " + candidate);
+                    assertEquals(expected, matrix.get(candidate, query), candidate + " -> " + query);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void singleTrajectoryHasOnlyTheDiagonal() {
+        var matrix = new PairwiseDistances(SeededData.trajectoryStore(1, 5, 10, 6), BANDWIDTH).compute();
+        assertEquals(1, matrix.getSize());
+        assertEquals(0, matrix.get(0, 0));
+    }
+
+    @Test
+    void emptyStoreGivesAnEmptyMatrix() {
+        var store = new TrajectoryStore(new double[0], new double[0], new long[0], new int[0], new int[]{0});
+        assertEquals(0, new PairwiseDistances(store, BANDWIDTH).compute().getSize());
+    }
+
+    /**
+     * The builder never yields a trajectory without fixes, so one is spliced into the offset table by hand.
+     */
+    private static TrajectoryStore withEmptyTrajectory(TrajectoryStore store) {
+        int trajectoryCount = store.getTrajectoryCount();
+        int[] uniqueIds = new int[trajectoryCount + 1];
+        int[] offsets = new int[trajectoryCount + 2];
+        for (int trajectory = 0, source = 0; trajectory <= trajectoryCount; trajectory++) {
+            if (trajectory == EMPTY_TRAJECTORY) {
+                uniqueIds[trajectory] = 1000;
+                offsets[trajectory] = store.getStart(source);
+            } else {
+                uniqueIds[trajectory] = store.getUniqueId(source);
+                offsets[trajectory] = store.getStart(source);
+                source++;
+            }
+        }
+        offsets[trajectoryCount + 1] = store.getPointCount();
+
+        double[] latitudes = new double[store.getPointCount()];
+        double[] longitudes = new double[store.getPointCount()];
+        long[] timestamps = new long[store.getPointCount()];
+        store.getLatitudes().get(latitudes);
+        store.getLongitudes().get(longitudes);
+        store.getTimestamps().get(timestamps);
+        var spliced = new TrajectoryStore(latitudes, longitudes, timestamps, uniqueIds, offsets);
+        assertEquals(0, spliced.getLength(EMPTY_TRAJECTORY));
+        return spliced;
+    }
+}
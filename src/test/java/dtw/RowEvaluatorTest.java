@@ -0,0 +1,76 @@
+package dtw;
+
+import model.TrajectoryStore;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import utility.SeededData;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static utility.MathUtility.*;
+
+/**
+ * The vector lanes follow the scalar formulas, but SIMD sin, asin and fma may round differently, so the costs are
+ * compared in ulps rather than for equality.
+ */
+class RowEvaluatorTest {
+
+    private static final double MAX_ULPS = 8;
+
+    private static TrajectoryStore store;
+
+    @BeforeAll
+    static void setUp() {
+        store = SeededData.trajectoryStore(20, 50, 300, 12);
+    }
+
+    @Test
+    void selectionPrefersVectorWhenAvailable() {
+        assertEquals(RowEvaluator.isVectorAvailable() ? RowEvaluator.VECTOR : RowEvaluator.SCALAR, RowEvaluator.select(null));
+        assertEquals(RowEvaluator.SCALAR, RowEvaluator.select("Scalar"));
+    }
+
+    @Test
+    void unknownEvaluatorListsTheValidOnes() {
+        var exception = assertThrows(IllegalArgumentException.class, () -> RowEvaluator.select("simd"));
+        assertEquals("dtw.rowEvaluator was simd, expected one of [scalar, vector]", exception.getMessage());
+    }
+
+    @ParameterizedTest
+    @EnumSource(DistanceKernel.class)
+    void vectorCostsStayWithinUlpsOfScalarCosts(DistanceKernel kernel) {
+        assumeTrue(RowEvaluator.isVectorAvailable(), "needs --add-modules jdk.incubator.vector and SIMD lanes");
+        var coordinates = store.getPreparedCoordinates();
+        int pointCount = store.getPointCount();
+        double[] scalar = new double[pointCount];
+        double[] vector = new double[pointCount];
+        // Odd counts and offsets leave a scalar tail after the vector loop
+        for (int from = 0; from < pointCount; from += 7) {
+            int toStart = from % 5;
+            int count = pointCount - toStart - from % 3;
+            RowEvaluator.SCALAR.rowDistances(kernel, coordinates, from, toStart, count, scalar, 0);
+            RowEvaluator.VECTOR.rowDistances(kernel, coordinates, from, toStart, count, vector, 0);
+            for (int i = 0; i < count; i++) {
+                double ulps = Math.abs(scalar[i] - vector[i]) / Math.ulp(scalar[i]);
+                assertTrue(ulps <= MAX_ULPS, kernel + " cost " + from + " -> " + (toStart + i) + " differs by " + ulps + " ulps");
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(DistanceKernel.class)
+    void vectorDistancesMatchScalarDistances(DistanceKernel kernel) {
+        assumeTrue(RowEvaluator.isVectorAvailable(), "needs --add-modules jdk.incubator.vector and SIMD lanes");
+        var scalar = new DtwEngine(kernel, RowEvaluator.SCALAR);
+        var vector = new DtwEngine(kernel, RowEvaluator.VECTOR);
+        for (int query = 0; query < store.getTrajectoryCount(); query++) {
+            for (int candidate = 0; candidate < store.getTrajectoryCount(); candidate++) {
+                var region = computeConstraintRegionBounds(store.getLength(query), store.getLength(candidate), 0.1);
+                double expected = scalar.distance(store, query, candidate, region);
+                assertEquals(expected, vector.distance(store, query, candidate, region), expected * 1e-12);
+            }
+        }
+    }
+}
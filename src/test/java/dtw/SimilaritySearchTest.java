@@ -0,0 +1,116 @@
+package dtw;
+
+import model.TrajectoryStore;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import utility.SeededData;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static utility.MathUtility.*;
+
+class SimilaritySearchTest {
+
+    private static final int NEAREST_NEIGHBOURS = 5;
+
+    private static TrajectoryStore store;
+
+    @BeforeAll
+    static void setUp() {
+        store = SeededData.trajectoryStore(60, 20, 80, 5);
+    }
+
+    static Stream<Arguments> bandwidthsAndKernels() {
+        return Stream.of(0.0, 0.05, 0.2, 1.0)
+                .flatMap(bandwidth -> Arrays.stream(DistanceKernel.values()).map(kernel -> Arguments.of(bandwidth, kernel)));
+    }
+
+    /**
+     * The cascade may only skip candidates that cannot be among the k nearest, so the search must find the same
+     * distances as computing DTW against every trajectory.
+     */
+    @ParameterizedTest
+    @MethodSource("bandwidthsAndKernels")
+    void cascadeFindsTheBruteForceNeighbours(double bandwidth, DistanceKernel kernel) {
+        var search = new SimilaritySearch(store, bandwidth, kernel);
+        var engine = new DtwEngine(kernel);
+        for (int query = 0; query < store.getTrajectoryCount(); query += 7) {
+            double[] bruteForce = bruteForceDistances(engine, query, bandwidth);
+            var result = search.search(query, NEAREST_NEIGHBOURS);
+
+            double[] expected = Arrays.copyOf(bruteForce, Math.min(NEAREST_NEIGHBOURS, bruteForce.length));
+            assertArrayEquals(expected, result.getDistances(), 1e-9 * expected[expected.length - 1], "query " + query);
+            for (int i = 0; i < result.getUniqueIds().length; i++) {
+                int candidate = store.indexOf(result.getUniqueIds()[i]);
+                assertNotEquals(query, candidate);
+                var region = computeConstraintRegionBounds(store.getLength(query), store.getLength(candidate), bandwidth);
+                assertEquals(engine.distance(store, query, candidate, region), result.getDistances()[i], 1e-9);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("bandwidthsAndKernels")
+    void everyCandidateIsAccountedFor(double bandwidth, DistanceKernel kernel) {
+        var result = new SimilaritySearch(store, bandwidth, kernel).search(0, NEAREST_NEIGHBOURS);
+        assertEquals(store.getTrajectoryCount() - 1, result.getCandidates());
+        assertEquals(result.getCandidates(),
+                result.getPrunedByKim() + result.getPrunedByKeogh() + result.getAbandonedDtw() + result.getCompletedDtw());
+        // Otherwise the brute-force comparison above would not exercise the cascade
+        assertTrue(result.getCompletedDtw() < result.getCandidates());
+    }
+
+    /**
+     * An engine shared between searches, as the service keeps one per thread, carries only buffers between them.
+     */
+    @ParameterizedTest
+    @MethodSource("bandwidthsAndKernels")
+    void sharedEngineFindsTheSameNeighbours(double bandwidth, DistanceKernel kernel) {
+        var engine = new DtwEngine(kernel);
+        for (int query = 0; query < store.getTrajectoryCount(); query += 11) {
+            var expected = new SimilaritySearch(store, bandwidth, kernel).search(query, NEAREST_NEIGHBOURS);
+            var shared = new SimilaritySearch(store, bandwidth, engine).search(query, NEAREST_NEIGHBOURS);
+            assertArrayEquals(expected.getUniqueIds(), shared.getUniqueIds());
+            assertArrayEquals(expected.getDistances(), shared.getDistances());
+        }
+    }
+
+    /**
+     * Bounds that differ only below float precision share a sort key, so the order is checked against the rounded-down
+     * key, which must never exceed the exact bound.
+     */
+    @Test
+    void candidatesAreOrderedByTheirRoundedDownBound() {
+        double[] bounds = {3.5, Double.POSITIVE_INFINITY, 0.0, 1e-3, 1.0 + 1e-12, 1.0, 2e40, 7.25, Double.POSITIVE_INFINITY};
+        long[] order = SimilaritySearch.orderByBound(bounds);
+
+        assertEquals(7, order.length);
+        assertArrayEquals(new int[]{2, 3}, new int[]{(int) order[0], (int) order[1]});
+        assertEquals(6, (int) order[6]);
+        float previous = 0;
+        for (long key : order) {
+            int candidate = (int) key;
+            float bound = SimilaritySearch.sortKeyBound(key);
+            assertNotEquals(Double.POSITIVE_INFINITY, bounds[candidate]);
+            assertTrue(bound <= bounds[candidate], "candidate " + candidate);
+            assertTrue(bound >= previous, "candidate " + candidate);
+            previous = bound;
+        }
+    }
+
+    private static double[] bruteForceDistances(DtwEngine engine, int query, double bandwidth) {
+        return IntStream.range(0, store.getTrajectoryCount())
+                .filter(candidate -> candidate != query)
+                .mapToDouble(candidate -> engine.distance(store, query, candidate,
+                        computeConstraintRegionBounds(store.getLength(query), store.getLength(candidate), bandwidth)))
+                .filter(distance -> distance != Double.POSITIVE_INFINITY)
+                .sorted()
+                .toArray();
+    }
+}
@@ -0,0 +1,97 @@
+package kkn;
+
+import model.HaarEnergyIndex;
+import model.MappedWaveletFile;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utility.SeededData;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static utility.MathUtility.*;
+
+class ChunkedBoundsTest {
+
+    private static final int RECORD_COUNT = 1000;
+    private static final int SERIES_LENGTH = 64;
+
+    private static ForkJoinPool pool;
+    private static List<List<Double>> dataSet;
+    private static HaarEnergyIndex energyIndex;
+    private static List<List<Double>> queries;
+
+    @BeforeAll
+    static void setUp() {
+        pool = new ForkJoinPool(4);
+        var random = new Random(17);
+        dataSet = SeededData.haarDataSet(RECORD_COUNT, SERIES_LENGTH, random);
+        energyIndex = HaarEnergyIndex.of(dataSet);
+        queries = SeededData.haarDataSet(10, SERIES_LENGTH, random);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void pooledBoundsEqualSequentialBounds() {
+        int[] records = IntStream.range(0, RECORD_COUNT).filter(record -> record % 3 != 0).toArray();
+        var query = queries.get(0);
+        for (int depth = 1; depth <= 6; depth++) {
+            double[][] sequential = bounds(query, records, depth, null, ChunkedBounds.DEFAULT_CHUNK_SIZE);
+            double[][] pooled = bounds(query, records, depth, pool, 16);
+            assertArrayEquals(sequential[0], pooled[0], "lower bounds at depth " + depth);
+            assertArrayEquals(sequential[1], pooled[1], "upper bounds at depth " + depth);
+        }
+    }
+
+    @Test
+    void pooledSearchFindsSequentialNeighbours() {
+        for (var query : queries) {
+            var sequential = BaseAlgorithm.stepwiseSimilaritySearch(dataSet, energyIndex, query, 10, null);
+            var pooled = BaseAlgorithm.stepwiseSimilaritySearch(dataSet, energyIndex, query, 10, pool);
+            assertEquals(sequential, pooled);
+        }
+    }
+
+    @Test
+    void pooledMappedSearchFindsSequentialNeighbours(@TempDir Path directory) {
+        var waveletFile = directory.resolve("records.wvl");
+        MappedWaveletFile.write(dataSet, waveletFile);
+        var file = MappedWaveletFile.open(waveletFile);
+        var sequential = new MappedStepwiseSearch(file);
+        var pooled = new MappedStepwiseSearch(file, pool, 16);
+        for (var query : queries) {
+            double[] queryHaar = query.stream().mapToDouble(Double::doubleValue).toArray();
+            assertArrayEquals(sequential.search(queryHaar, 10), pooled.search(queryHaar, 10));
+        }
+    }
+
+    @Test
+    void smallRangesRunOnTheCallingThread() {
+        var caller = Thread.currentThread();
+        ChunkedBounds.compute(new int[]{1, 2, 3}, 3, (records, from, to) -> assertSame(caller, Thread.currentThread()), pool, 4);
+    }
+
+    private static double[][] bounds(List<Double> query, int[] records, int depth, ForkJoinPool pool, int chunkSize) {
+        double[] lowerBounds = new double[RECORD_COUNT];
+        double[] upperBounds = new double[RECORD_COUNT];
+        double querySumToDepth = bottomUpPreComputeSumToDepth(query, depth);
+        ChunkedBounds.compute(records, records.length, (chunk, from, to) -> {
+            for (int i = from; i < to; i++) {
+                int record = chunk[i];
+                lowerBounds[record] = computeLowerBounds(query, dataSet.get(record), depth, querySumToDepth, energyIndex, record);
+                upperBounds[record] = computeUpperBounds(query, dataSet.get(record), depth, querySumToDepth, energyIndex, record);
+            }
+        }, pool, chunkSize);
+        return new double[][]{lowerBounds, upperBounds};
+    }
+}
@@ -0,0 +1,85 @@
+package kkn;
+
+import model.HaarEnergyIndex;
+import model.MappedWaveletFile;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utility.SeededData;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedStepwiseSearchTest {
+
+    private static final int SERIES_LENGTH = 128;
+    private static final int QUERY_COUNT = 12;
+
+    @TempDir
+    static Path directory;
+
+    private static List<List<Double>> dataSet;
+    private static HaarEnergyIndex energyIndex;
+    private static double[][] queries;
+    private static MappedWaveletFile file;
+
+    @BeforeAll
+    static void setUp() {
+        var random = new Random(18);
+        dataSet = SeededData.haarDataSet(500, SERIES_LENGTH, random);
+        energyIndex = HaarEnergyIndex.of(dataSet);
+        // Half of the queries are records of the dataset, so some batches mix easy and hard queries
+        queries = new double[QUERY_COUNT][];
+        var haarQueries = SeededData.haarDataSet(QUERY_COUNT / 2, SERIES_LENGTH, random);
+        for (int query = 0; query < QUERY_COUNT; query++) {
+            var haar = query % 2 == 0 ? haarQueries.get(query / 2) : dataSet.get(query * 37);
+            queries[query] = haar.stream().mapToDouble(Double::doubleValue).toArray();
+        }
+        var path = directory.resolve("records.wvl");
+        MappedWaveletFile.write(dataSet, path);
+        file = MappedWaveletFile.open(path);
+    }
+
+    @Test
+    void batchEqualsQueriesRunAlone() {
+        for (int nearestNeighbours : new int[]{1, 5, 20}) {
+            var batchSearch = new MappedStepwiseSearch(file);
+            int[][] batch = batchSearch.search(queries, nearestNeighbours);
+            var singleSearch = new MappedStepwiseSearch(file);
+            for (int query = 0; query < QUERY_COUNT; query++) {
+                assertArrayEquals(singleSearch.search(queries[query], nearestNeighbours), batch[query],
+                        "query " + query + " with k = " + nearestNeighbours);
+            }
+        }
+    }
+
+    @Test
+    void batchEqualsInMemorySearch() {
+        int[][] batch = new MappedStepwiseSearch(file).search(queries, 10);
+        for (int query = 0; query < QUERY_COUNT; query++) {
+            var queryHaar = Arrays.stream(queries[query]).boxed().toList();
+            var nearest = BaseAlgorithm.stepwiseSimilaritySearch(dataSet, energyIndex, queryHaar, 10);
+            int[] records = nearest.stream().mapToInt(dataSet::indexOf).toArray();
+            assertArrayEquals(records, batch[query], "query " + query);
+        }
+    }
+
+    @Test
+    void reusedSearchForgetsThePreviousBatch() {
+        var search = new MappedStepwiseSearch(file);
+        int[][] first = search.search(queries, 5);
+        search.search(new double[][]{queries[3], queries[0]}, 3);
+        assertArrayEquals(first, search.search(queries, 5));
+    }
+
+    @Test
+    void rejectsQueriesOfAnotherLength() {
+        var search = new MappedStepwiseSearch(file);
+        assertThrows(InputMismatchException.class, () -> search.search(new double[][]{queries[0], new double[64]}, 5));
+    }
+}
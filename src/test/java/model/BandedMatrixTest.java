@@ -0,0 +1,50 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static utility.MathUtility.*;
+
+class BandedMatrixTest {
+
+    @Test
+    void storesOnlyTheBand() {
+        var region = computeConstraintRegionBounds(200, 150, 0.1);
+        var matrix = new BandedMatrix(region);
+        assertEquals(region.getArea(), matrix.getValues().length);
+        assertTrue(matrix.getValues().length < 200 * 150 / 4);
+        assertEquals(region.getArea(), matrix.getRowOffsets()[region.getRowSize()]);
+    }
+
+    @Test
+    void bandRowsAreLaidOutBackToBack() {
+        var region = new ConstraintRegion(new int[]{0, 0, 1, 3}, new int[]{1, 2, 4, 4}, 5);
+        var matrix = new BandedMatrix(region);
+        int expectedIndex = 0;
+        for (int row = 0; row < region.getRowSize(); row++) {
+            for (int column = region.getLowerBound(row); column <= region.getUpperBound(row); column++) {
+                assertEquals(expectedIndex, matrix.indexOf(row, column));
+                matrix.set(row, column, expectedIndex);
+                expectedIndex++;
+            }
+        }
+        assertEquals(expectedIndex, matrix.getValues().length);
+        for (int row = 0; row < region.getRowSize(); row++) {
+            for (int column = region.getLowerBound(row); column <= region.getUpperBound(row); column++) {
+                assertEquals(matrix.indexOf(row, column), matrix.get(row, column));
+            }
+        }
+    }
+
+    @Test
+    void cellsOutsideTheBandAreInfinite() {
+        var region = new ConstraintRegion(new int[]{0, 0, 1, 3}, new int[]{1, 2, 4, 4}, 5);
+        var matrix = new BandedMatrix(region);
+        for (int row = 0; row < region.getRowSize(); row++) {
+            for (int column = 0; column < region.getColumnSize(); column++) {
+                double expected = region.contains(row, column) ? 0 : Double.POSITIVE_INFINITY;
+                assertEquals(expected, matrix.get(row, column), "(" + row + ", " + column + ")");
+            }
+        }
+    }
+}
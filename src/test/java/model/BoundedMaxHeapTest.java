@@ -0,0 +1,117 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedMaxHeapTest {
+
+    @Test
+    void thresholdIsInfiniteUntilFull() {
+        var heap = new BoundedMaxHeap(3);
+        assertTrue(heap.offer(2.0, 0));
+        assertTrue(heap.offer(5.0, 1));
+        assertFalse(heap.isFull());
+        assertEquals(Double.POSITIVE_INFINITY, heap.getThreshold());
+
+        assertTrue(heap.offer(1.0, 2));
+        assertTrue(heap.isFull());
+        assertEquals(5.0, heap.getThreshold());
+    }
+
+    @Test
+    void evictsTheLargestKeyAtCapacity() {
+        var heap = new BoundedMaxHeap(3);
+        heap.offer(4.0, 0);
+        heap.offer(7.0, 1);
+        heap.offer(6.0, 2);
+
+        assertFalse(heap.offer(8.0, 3));
+        assertEquals(7.0, heap.getThreshold());
+        assertTrue(heap.offer(5.0, 4));
+        assertEquals(6.0, heap.getThreshold());
+        assertTrue(heap.offer(1.0, 5));
+        assertEquals(5.0, heap.getThreshold());
+        assertEquals(3, heap.getSize());
+
+        assertSorted(heap, new double[]{1.0, 4.0, 5.0}, new int[]{5, 0, 4});
+    }
+
+    @Test
+    void keyEqualToTheThresholdIsRejectedWhenFull() {
+        var heap = new BoundedMaxHeap(2);
+        heap.offer(3.0, 0);
+        heap.offer(3.0, 1);
+
+        assertFalse(heap.offer(3.0, 2));
+        assertEquals(3.0, heap.getThreshold());
+        double[] keys = new double[2];
+        int[] values = new int[2];
+        heap.toSortedArrays(keys, values);
+        assertArrayEquals(new double[]{3.0, 3.0}, keys);
+        Arrays.sort(values);
+        assertArrayEquals(new int[]{0, 1}, values);
+    }
+
+    @Test
+    void sortedArraysLeaveTheHeapIntact() {
+        var heap = new BoundedMaxHeap(4);
+        heap.offer(9.0, 0);
+        heap.offer(2.0, 1);
+        heap.offer(5.0, 2);
+
+        assertSorted(heap, new double[]{2.0, 5.0, 9.0}, new int[]{1, 2, 0});
+        assertEquals(3, heap.getSize());
+        assertSorted(heap, new double[]{2.0, 5.0, 9.0}, new int[]{1, 2, 0});
+        assertTrue(heap.offer(3.0, 3));
+        assertEquals(9.0, heap.getThreshold());
+    }
+
+    @Test
+    void keepsTheSmallestKeysOfARandomStream() {
+        var random = new Random(15);
+        double[] offered = random.doubles(500).toArray();
+        int capacity = 25;
+        var heap = new BoundedMaxHeap(capacity);
+        for (int i = 0; i < offered.length; i++) {
+            heap.offer(offered[i], i);
+        }
+
+        int[] expectedValues = IntStream.range(0, offered.length).boxed()
+                .sorted(Comparator.comparingDouble(i -> offered[i]))
+                .limit(capacity)
+                .mapToInt(Integer::intValue)
+                .toArray();
+        double[] expectedKeys = Arrays.stream(expectedValues).mapToDouble(i -> offered[i]).toArray();
+        assertSorted(heap, expectedKeys, expectedValues);
+        assertEquals(expectedKeys[capacity - 1], heap.getThreshold());
+    }
+
+    @Test
+    void clearEmptiesTheHeap() {
+        var heap = new BoundedMaxHeap(1);
+        heap.offer(1.0, 0);
+        heap.clear();
+        assertEquals(0, heap.getSize());
+        assertEquals(Double.POSITIVE_INFINITY, heap.getThreshold());
+        assertTrue(heap.offer(2.0, 1));
+    }
+
+    @Test
+    void capacityMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new BoundedMaxHeap(0));
+    }
+
+    private static void assertSorted(BoundedMaxHeap heap, double[] expectedKeys, int[] expectedValues) {
+        double[] keys = new double[heap.getSize()];
+        int[] values = new int[heap.getSize()];
+        heap.toSortedArrays(keys, values);
+        assertArrayEquals(expectedKeys, keys);
+        assertArrayEquals(expectedValues, values);
+    }
+}
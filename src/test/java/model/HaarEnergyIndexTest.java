@@ -0,0 +1,88 @@
+package model;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import utility.SeededData;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static utility.MathUtility.*;
+
+/**
+ * The prefix sums must reproduce the List-based MathUtility sums they replace, record by record and depth by depth.
+ * Both add the same squares in a different order, so they agree up to rounding.
+ */
+class HaarEnergyIndexTest {
+
+    private static final int RECORD_COUNT = 50;
+    private static final int SERIES_LENGTH = 32;
+    private static final double RELATIVE_TOLERANCE = 1e-12;
+
+    private static List<List<Double>> dataSet;
+    private static HaarEnergyIndex energyIndex;
+    private static List<List<Double>> queries;
+
+    @BeforeAll
+    static void setUp() {
+        var random = new Random(23);
+        dataSet = SeededData.haarDataSet(RECORD_COUNT, SERIES_LENGTH, random);
+        energyIndex = HaarEnergyIndex.of(dataSet);
+        queries = SeededData.haarDataSet(5, SERIES_LENGTH, random);
+    }
+
+    @Test
+    void prefixSumsMatchTheMathUtilitySums() {
+        int levelCount = getBinaryExponent(dataSet.get(0));
+        assertEquals(levelCount, energyIndex.getLevelCount());
+        for (int record = 0; record < RECORD_COUNT; record++) {
+            var series = dataSet.get(record);
+            assertClose(computeSigmaForEveryLevel(series), energyIndex.getSigma(record), "sigma of " + record);
+            assertClose(sumOfSquares(series), energyIndex.getSumOfSquares(record), "sum of squares of " + record);
+            for (int depth = 1; depth <= levelCount; depth++) {
+                String position = "record " + record + " at depth " + depth;
+                assertClose(bottomUpPreComputeSumToDepth(series, depth), energyIndex.getWeightedEnergyBelow(record, depth), position);
+                assertClose(bottomUpSumDataPointsUpToLevel(series, depth), energyIndex.getEnergyBelow(record, depth), position);
+            }
+        }
+    }
+
+    @Test
+    void indexedBoundsMatchTheRecomputedBounds() {
+        for (var query : queries) {
+            for (int depth = 1; depth <= energyIndex.getLevelCount(); depth++) {
+                double querySumToDepth = bottomUpPreComputeSumToDepth(query, depth);
+                for (int record = 0; record < RECORD_COUNT; record++) {
+                    var series = dataSet.get(record);
+                    String position = "record " + record + " at depth " + depth;
+                    assertClose(computeLowerBounds(query, series, depth),
+                            computeLowerBounds(query, series, depth, querySumToDepth, energyIndex, record), position);
+                    assertClose(computeUpperBounds(query, series, depth),
+                            computeUpperBounds(query, series, depth, querySumToDepth, energyIndex, record), position);
+                }
+            }
+        }
+    }
+
+    @Test
+    void flatBuildMatchesTheBoxedBuild() {
+        double[] flat = new double[RECORD_COUNT * SERIES_LENGTH];
+        for (int record = 0; record < RECORD_COUNT; record++) {
+            for (int i = 0; i < SERIES_LENGTH; i++) {
+                flat[record * SERIES_LENGTH + i] = dataSet.get(record).get(i);
+            }
+        }
+        var built = HaarEnergyIndex.build(flat, SERIES_LENGTH);
+        assertArrayEquals(energyIndex.getEnergyPrefix(), built.getEnergyPrefix());
+        assertArrayEquals(energyIndex.getWeightedPrefix(), built.getWeightedPrefix());
+        assertArrayEquals(energyIndex.getSigmas(), built.getSigmas());
+    }
+
+    /**
+     * The lower bound subtracts a square root from the sums, so it is compared relative to the sums' scale.
+     */
+    private static void assertClose(double expected, double actual, String message) {
+        assertEquals(expected, actual, Math.max(1, Math.abs(expected)) * RELATIVE_TOLERANCE, message);
+    }
+}
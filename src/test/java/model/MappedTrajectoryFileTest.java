@@ -0,0 +1,102 @@
+package model;
+
+import dtw.DistanceKernel;
+import dtw.DtwEngine;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utility.SeededData;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static utility.MathUtility.*;
+
+class MappedTrajectoryFileTest {
+
+    @TempDir
+    static Path directory;
+
+    private static TrajectoryStore store;
+    private static MappedTrajectoryFile file;
+
+    @BeforeAll
+    static void setUp() {
+        // Added in descending uniqueId order, so the file's sorted layout differs from the store's
+        var seeded = SeededData.trajectoryStore(40, 1, 120, 9);
+        var builder = new TrajectoryStore.Builder();
+        for (int trajectory = seeded.getTrajectoryCount() - 1; trajectory >= 0; trajectory--) {
+            for (int index = seeded.getStart(trajectory); index < seeded.getEnd(trajectory); index++) {
+                builder.add(seeded.getUniqueId(trajectory), seeded.getLatitude(index), seeded.getLongitude(index), seeded.getTimestamp(index));
+            }
+        }
+        store = builder.build();
+
+        var path = directory.resolve("trajectories.trj");
+        MappedTrajectoryFile.write(store, path);
+        file = MappedTrajectoryFile.open(path);
+    }
+
+    @Test
+    void mappedStoreHoldsEveryFix() {
+        var mapped = file.asStore();
+        assertEquals(store.getTrajectoryCount(), mapped.getTrajectoryCount());
+        assertEquals(store.getPointCount(), mapped.getPointCount());
+        for (int trajectory = 0; trajectory < store.getTrajectoryCount(); trajectory++) {
+            assertSameTrajectory(store, trajectory, mapped, mapped.indexOf(store.getUniqueId(trajectory)));
+        }
+    }
+
+    @Test
+    void shardCopiesOnlyTheGivenIds() {
+        var shard = file.toStore(3, 17, 1000, 39);
+        assertEquals(3, shard.getTrajectoryCount());
+        for (int uniqueId : new int[]{3, 17, 39}) {
+            assertSameTrajectory(store, store.indexOf(uniqueId), shard, shard.indexOf(uniqueId));
+        }
+        assertEquals(-1, shard.indexOf(1000));
+    }
+
+    @Test
+    void shardCopiesRepeatedIdsOnceInAscendingOrder() {
+        var shard = file.toStore(39, 3, 39, 17, 3);
+        assertArrayEquals(new int[]{3, 17, 39}, shard.getUniqueIds());
+        assertEquals(store.getLength(store.indexOf(3)) + store.getLength(store.indexOf(17)) + store.getLength(store.indexOf(39)),
+                shard.getPointCount());
+        for (int uniqueId : new int[]{3, 17, 39}) {
+            assertSameTrajectory(store, store.indexOf(uniqueId), shard, shard.indexOf(uniqueId));
+        }
+    }
+
+    @Test
+    void dtwOverTheMappingEqualsDtwOnTheHeap() {
+        var mapped = file.asStore();
+        for (var kernel : DistanceKernel.values()) {
+            var engine = new DtwEngine(kernel);
+            for (int query = 0; query < 5; query++) {
+                for (int candidate = 0; candidate < store.getTrajectoryCount(); candidate++) {
+                    var region = computeConstraintRegionBounds(store.getLength(query), store.getLength(candidate), 0.1);
+                    int mappedQuery = mapped.indexOf(store.getUniqueId(query));
+                    int mappedCandidate = mapped.indexOf(store.getUniqueId(candidate));
+                    assertEquals(
+                            engine.distance(store, query, candidate, region),
+                            engine.distance(mapped, mappedQuery, mappedCandidate, region),
+                            kernel + " " + query + " " + candidate
+                    );
+                }
+            }
+        }
+    }
+
+    private static void assertSameTrajectory(TrajectoryStore expected, int expectedTrajectory, TrajectoryStore actual, int actualTrajectory) {
+        assertTrue(actualTrajectory >= 0);
+        assertEquals(expected.getLength(expectedTrajectory), actual.getLength(actualTrajectory));
+        for (int fix = 0; fix < expected.getLength(expectedTrajectory); fix++) {
+            int expectedIndex = expected.getStart(expectedTrajectory) + fix;
+            int actualIndex = actual.getStart(actualTrajectory) + fix;
+            assertEquals(expected.getLatitude(expectedIndex), actual.getLatitude(actualIndex));
+            assertEquals(expected.getLongitude(expectedIndex), actual.getLongitude(actualIndex));
+            assertEquals(expected.getTimestamp(expectedIndex), actual.getTimestamp(actualIndex));
+        }
+    }
+}
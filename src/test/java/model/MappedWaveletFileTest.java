@@ -0,0 +1,107 @@
+package model;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utility.SeededData;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static model.MappedWaveletFile.levelFrom;
+import static model.MappedWaveletFile.levelWidth;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedWaveletFileTest {
+
+    private static final int RECORD_COUNT = 300;
+    private static final int SERIES_LENGTH = 128;
+
+    @TempDir
+    static Path directory;
+
+    private static List<List<Double>> dataSet;
+    private static Path file;
+
+    @BeforeAll
+    static void setUp() {
+        dataSet = SeededData.haarDataSet(RECORD_COUNT, SERIES_LENGTH, new Random(16));
+        // Zeros have neither sign
+        dataSet.get(7).set(100, 0.0);
+        file = directory.resolve("records.wvl");
+        MappedWaveletFile.write(dataSet, file);
+    }
+
+    @Test
+    void readsBackWhatWasWritten() {
+        assertReadsBack(MappedWaveletFile.open(file));
+    }
+
+    /**
+     * Windows of a few records stand in for the 2 GiB mapping limit, which would take files of several GiB to reach.
+     */
+    @Test
+    void readsBackAcrossWindows() {
+        for (long maxWindowSize : new long[]{SERIES_LENGTH * Double.BYTES, 1000, 4096}) {
+            assertReadsBack(MappedWaveletFile.open(file, maxWindowSize));
+        }
+    }
+
+    @Test
+    void streamingWriterWritesTheSameFile() throws Exception {
+        var streamed = directory.resolve("streamed.wvl");
+        try (var writer = new MappedWaveletFile.Writer(streamed, RECORD_COUNT, SERIES_LENGTH)) {
+            double[] buffer = new double[SERIES_LENGTH + 3];
+            for (var record : dataSet) {
+                for (int i = 0; i < SERIES_LENGTH; i++) {
+                    buffer[3 + i] = record.get(i);
+                }
+                writer.append(buffer, 3);
+            }
+        }
+        assertArrayEquals(Files.readAllBytes(file), Files.readAllBytes(streamed));
+    }
+
+    @Test
+    void incompleteFileIsRejected() {
+        var incomplete = directory.resolve("incomplete.wvl");
+        var writer = new MappedWaveletFile.Writer(incomplete, RECORD_COUNT, SERIES_LENGTH);
+        writer.append(new double[SERIES_LENGTH], 0);
+        assertThrows(IllegalStateException.class, writer::close);
+        assertThrows(IllegalArgumentException.class, () -> MappedWaveletFile.open(incomplete));
+    }
+
+    private static void assertReadsBack(MappedWaveletFile mapped) {
+        assertEquals(RECORD_COUNT, mapped.getRecordCount());
+        assertEquals(SERIES_LENGTH, mapped.getSeriesLength());
+        var expectedIndex = HaarEnergyIndex.of(dataSet);
+        assertArrayEquals(expectedIndex.getEnergyPrefix(), mapped.getEnergyIndex().getEnergyPrefix());
+        assertArrayEquals(expectedIndex.getWeightedPrefix(), mapped.getEnergyIndex().getWeightedPrefix());
+        assertArrayEquals(expectedIndex.getSigmas(), mapped.getEnergyIndex().getSigmas());
+
+        double[] coefficients = new double[SERIES_LENGTH];
+        long[] positive = new long[mapped.getSignWords()];
+        long[] negative = new long[mapped.getSignWords()];
+        for (int record = 0; record < RECORD_COUNT; record++) {
+            var expected = dataSet.get(record);
+            for (int level = 1; level <= mapped.getLevelCount(); level++) {
+                int from = levelFrom(SERIES_LENGTH, level);
+                mapped.readLevel(level, record, coefficients, from);
+                for (int i = from; i < from + levelWidth(SERIES_LENGTH, level); i++) {
+                    assertEquals(expected.get(i), coefficients[i]);
+                }
+            }
+            mapped.readSignWords(record, 0, positive, negative);
+            for (int i = 0; i < SERIES_LENGTH; i++) {
+                boolean isPositive = (positive[i >>> 6] >>> i & 1) != 0;
+                boolean isNegative = (negative[i >>> 6] >>> i & 1) != 0;
+                assertEquals(expected.get(i) > 0, isPositive, "record " + record + ", coefficient " + i);
+                assertEquals(expected.get(i) < 0, isNegative, "record " + record + ", coefficient " + i);
+                assertEquals(positive[i >>> 6], mapped.getSignWord(record, i >>> 6, false));
+                assertEquals(negative[i >>> 6], mapped.getSignWord(record, i >>> 6, true));
+            }
+        }
+    }
+}
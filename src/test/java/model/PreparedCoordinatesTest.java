@@ -0,0 +1,45 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import utility.SeededData;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PreparedCoordinatesTest {
+
+    @Test
+    void columnsFollowTheFixes() {
+        var store = SeededData.trajectoryStore(10, 5, 50, 11);
+        var coordinates = store.getPreparedCoordinates();
+        double latitudeSum = 0;
+        for (int i = 0; i < store.getPointCount(); i++) {
+            latitudeSum += store.getLatitude(i);
+        }
+        double referenceCosine = Math.cos(Math.toRadians(latitudeSum / store.getPointCount()));
+
+        assertEquals(referenceCosine, coordinates.getReferenceCosine());
+        for (int i = 0; i < store.getPointCount(); i++) {
+            double latitude = Math.toRadians(store.getLatitude(i));
+            double longitude = Math.toRadians(store.getLongitude(i));
+            assertEquals(latitude, coordinates.getLatitudeRadians()[i]);
+            assertEquals(longitude, coordinates.getLongitudeRadians()[i]);
+            assertEquals(Math.cos(latitude), coordinates.getCosineLatitudes()[i]);
+            assertEquals(PreparedCoordinates.EARTH_RADIUS * referenceCosine * longitude, coordinates.getProjectedX()[i]);
+            assertEquals(PreparedCoordinates.EARTH_RADIUS * latitude, coordinates.getProjectedY()[i]);
+        }
+    }
+
+    @Test
+    void columnsAreDerivedOnce() {
+        var coordinates = SeededData.trajectoryStore(3, 5, 10, 11).getPreparedCoordinates();
+        assertSame(coordinates.getLatitudeRadians(), coordinates.getLatitudeRadians());
+        assertSame(coordinates.getProjectedX(), coordinates.getProjectedX());
+    }
+
+    @Test
+    void emptyStoreProjectsAroundTheEquator() {
+        var coordinates = new TrajectoryStore.Builder().build().getPreparedCoordinates();
+        assertEquals(1, coordinates.getReferenceCosine());
+        assertEquals(0, coordinates.getLatitudeRadians().length);
+    }
+}
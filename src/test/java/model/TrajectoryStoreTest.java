@@ -0,0 +1,137 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import utility.SeededData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrajectoryStoreTest {
+
+    @Test
+    void builderGroupsInterleavedIdsInAscendingOrder() {
+        var store = new TrajectoryStore.Builder()
+                .add(5, 55.0, 12.0, 1000)
+                .add(3, 56.0, 13.0, 1000)
+                .add(5, 55.1, 12.1, 2000)
+                .add(9, 57.0, 14.0, 1000)
+                .add(3, 56.1, 13.1, 2000)
+                .add(5, 55.2, 12.2, 3000)
+                .build();
+
+        assertArrayEquals(new int[]{3, 5, 9}, store.getUniqueIds());
+        assertArrayEquals(new int[]{0, 2, 5, 6}, store.getOffsets());
+        assertFix(store, 0, 56.0, 13.0, 1000);
+        assertFix(store, 1, 56.1, 13.1, 2000);
+        assertFix(store, 2, 55.0, 12.0, 1000);
+        assertFix(store, 3, 55.1, 12.1, 2000);
+        assertFix(store, 4, 55.2, 12.2, 3000);
+        assertFix(store, 5, 57.0, 14.0, 1000);
+        assertEquals(2, store.indexOf(9));
+    }
+
+    @Test
+    void builderOrdersEachTrajectoryByTimestamp() {
+        var store = new TrajectoryStore.Builder()
+                .add(1, 55.3, 12.3, 3000)
+                .add(1, 55.1, 12.1, 1000)
+                .add(2, 56.0, 13.0, 500)
+                .add(1, 55.4, 12.4, 4000)
+                .add(1, 55.2, 12.2, 2000)
+                .build();
+
+        assertArrayEquals(new int[]{0, 4, 5}, store.getOffsets());
+        for (int i = 0; i < 4; i++) {
+            assertFix(store, i, 55.1 + i * 0.1, 12.1 + i * 0.1, (i + 1) * 1000L);
+        }
+        assertFix(store, 4, 56.0, 13.0, 500);
+    }
+
+    /**
+     * The merge sort is stable, so fixes that share a timestamp keep the order they were added in.
+     */
+    @Test
+    void builderKeepsTheInputOrderOfEqualTimestamps() {
+        var store = new TrajectoryStore.Builder()
+                .add(1, 55.0, 12.0, 2000)
+                .add(1, 55.1, 12.1, 1000)
+                .add(1, 55.2, 12.2, 2000)
+                .add(1, 55.3, 12.3, 1000)
+                .build();
+
+        assertFix(store, 0, 55.1, 12.1, 1000);
+        assertFix(store, 1, 55.3, 12.3, 1000);
+        assertFix(store, 2, 55.0, 12.0, 2000);
+        assertFix(store, 3, 55.2, 12.2, 2000);
+    }
+
+    @Test
+    void builderReordersClusteredTrajectoriesThatArriveInDescendingIdOrder() {
+        var store = new TrajectoryStore.Builder()
+                .add(8, 58.0, 15.0, 1000)
+                .add(8, 58.1, 15.1, 2000)
+                .add(4, 54.0, 11.0, 1000)
+                .add(2, 52.0, 10.0, 1000)
+                .build();
+
+        assertArrayEquals(new int[]{2, 4, 8}, store.getUniqueIds());
+        assertArrayEquals(new int[]{0, 1, 2, 4}, store.getOffsets());
+        assertFix(store, 0, 52.0, 10.0, 1000);
+        assertFix(store, 3, 58.1, 15.1, 2000);
+    }
+
+    @Test
+    void builderKeepsTheLastTrajectory() {
+        var store = new TrajectoryStore.Builder()
+                .add(1, 55.0, 12.0, 1000)
+                .add(1, 55.1, 12.1, 2000)
+                .add(2, 56.0, 13.0, 1000)
+                .build();
+
+        assertEquals(2, store.getTrajectoryCount());
+        assertEquals(1, store.getLength(1));
+        assertFix(store, 2, 56.0, 13.0, 1000);
+    }
+
+    @Test
+    void shuffledFixesBuildTheSameStore() {
+        var expected = SeededData.trajectoryStore(40, 1, 60, 8);
+        List<Integer> order = new ArrayList<>();
+        for (int trajectory = 0; trajectory < expected.getTrajectoryCount(); trajectory++) {
+            for (int fix = expected.getStart(trajectory); fix < expected.getEnd(trajectory); fix++) {
+                order.add(fix);
+            }
+        }
+        Collections.shuffle(order, new Random(8));
+
+        var builder = new TrajectoryStore.Builder();
+        for (int fix : order) {
+            builder.add(expected.getUniqueId(trajectoryOf(expected, fix)), expected.getLatitude(fix), expected.getLongitude(fix), expected.getTimestamp(fix));
+        }
+        var shuffled = builder.build();
+
+        assertArrayEquals(expected.getUniqueIds(), shuffled.getUniqueIds());
+        assertArrayEquals(expected.getOffsets(), shuffled.getOffsets());
+        for (int fix = 0; fix < expected.getPointCount(); fix++) {
+            assertFix(shuffled, fix, expected.getLatitude(fix), expected.getLongitude(fix), expected.getTimestamp(fix));
+        }
+    }
+
+    private static int trajectoryOf(TrajectoryStore store, int fix) {
+        int trajectory = 0;
+        while (store.getEnd(trajectory) <= fix) {
+            trajectory++;
+        }
+        return trajectory;
+    }
+
+    private static void assertFix(TrajectoryStore store, int index, double latitude, double longitude, long timestamp) {
+        assertEquals(latitude, store.getLatitude(index), 1e-12, "latitude of fix " + index);
+        assertEquals(longitude, store.getLongitude(index), 1e-12, "longitude of fix " + index);
+        assertEquals(timestamp, store.getTimestamp(index), "timestamp of fix " + index);
+    }
+}
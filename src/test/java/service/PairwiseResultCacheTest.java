@@ -0,0 +1,56 @@
+package service;
+
+import dtw.DistanceKernel;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PairwiseResultCacheTest {
+
+    @Test
+    void everyKeyIsCachedBelowTheSegmentCount() {
+        for (int capacity = 1; capacity <= 20; capacity++) {
+            var cache = new PairwiseResultCache<Double>(capacity);
+            for (int queryId = 0; queryId < 100; queryId++) {
+                var key = key(queryId, 1);
+                cache.invalidateAll();
+                cache.get(key, () -> 1.0);
+                assertNotNull(cache.getIfPresent(key), "capacity " + capacity + " did not cache " + key);
+            }
+        }
+    }
+
+    @Test
+    void sizeNeverExceedsTheCapacity() {
+        for (int capacity : new int[]{1, 3, 15, 16, 17, 100}) {
+            var cache = new PairwiseResultCache<Double>(capacity);
+            for (int queryId = 0; queryId < 1000; queryId++) {
+                cache.get(key(queryId, 1), () -> 1.0);
+            }
+            assertTrue(cache.size() <= capacity);
+            assertEquals(1000 - cache.size(), cache.getEvictions());
+        }
+    }
+
+    @Test
+    void zeroCapacityCachesNothing() {
+        var cache = new PairwiseResultCache<Double>(0);
+        cache.get(key(1, 2), () -> 1.0);
+        assertNull(cache.getIfPresent(key(1, 2)));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void onlyTheLookupOfAKeyThatIsPresentCounts() {
+        var cache = new PairwiseResultCache<Double>(100);
+        assertNull(cache.getIfPresent(key(1, 2)));
+        assertEquals(2.0, cache.get(key(1, 2), () -> 2.0));
+        assertEquals(2.0, cache.getIfPresent(key(1, 2)));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    private static PairwiseResultCache.Key key(int queryId, int candidateId) {
+        return new PairwiseResultCache.Key(queryId, candidateId, 0.1, DistanceKernel.HAVERSINE);
+    }
+}
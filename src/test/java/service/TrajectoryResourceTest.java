@@ -0,0 +1,106 @@
+package service;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Test;
+
+import javax.inject.Inject;
+import java.util.concurrent.CountDownLatch;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Runs against the bundled dataset, whose uniqueIds start at 1 but are sparse. The test profile gives the
+ * QueryExecutor a single thread and a queue of one.
+ */
+@QuarkusTest
+class TrajectoryResourceTest {
+
+    private static final int UNKNOWN_ID = 99_999;
+
+    @Inject
+    QueryExecutor executor;
+
+    @Test
+    void answersDistancePathAndNeighbours() {
+        given().get("/trajectories/1/distance/2?bandwidth=0.2&kernel=EQUIRECTANGULAR")
+                .then()
+                .statusCode(200)
+                .body("queryId", is(1))
+                .body("candidateId", is(2))
+                .body("kernel", is("EQUIRECTANGULAR"))
+                .body("distance", greaterThan(0f));
+        given().get("/trajectories/1/path/2")
+                .then()
+                .statusCode(200)
+                .body("queryFixes[0]", is(0))
+                .body("candidateFixes[0]", is(0));
+        given().get("/trajectories/1/neighbours?k=3")
+                .then()
+                .statusCode(200)
+                .body("uniqueIds", hasSize(3))
+                .body("uniqueIds", not(hasItem(1)));
+    }
+
+    @Test
+    void pathQueriesAreTimedOnMissAndHit() {
+        given().get("/trajectories/2/path/3?bandwidth=0.25").then().statusCode(200);
+        given().get("/trajectories/2/path/3?bandwidth=0.25").then().statusCode(200);
+        given().get("/q/metrics")
+                .then()
+                .statusCode(200)
+                .body(containsString("query_latency_seconds_count{search=\"path\"}"));
+    }
+
+    @Test
+    void unknownIdsAreNotFound() {
+        given().get("/trajectories/" + UNKNOWN_ID + "/distance/1").then().statusCode(404);
+        given().get("/trajectories/1/distance/" + UNKNOWN_ID).then().statusCode(404);
+        given().get("/trajectories/1/path/" + UNKNOWN_ID).then().statusCode(404);
+        given().get("/trajectories/" + UNKNOWN_ID + "/neighbours").then().statusCode(404);
+        given().get("/trajectories/" + UNKNOWN_ID + "/approximate-distance/1").then().statusCode(404);
+    }
+
+    @Test
+    void invalidParametersAreBadRequests() {
+        given().get("/trajectories/1/distance/2?bandwidth=1.5").then().statusCode(400);
+        given().get("/trajectories/1/distance/2?bandwidth=-0.1").then().statusCode(400);
+        given().get("/trajectories/1/path/2?bandwidth=NaN").then().statusCode(400);
+        given().get("/trajectories/1/neighbours?k=0").then().statusCode(400);
+        given().get("/trajectories/1/approximate-distance/2?radius=-1").then().statusCode(400);
+    }
+
+    @Test
+    void fullQueueIsUnavailableButCachedPairsAreServed() {
+        given().get("/trajectories/1/distance/3?bandwidth=0.3").then().statusCode(200);
+
+        var running = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        try {
+            // The first computation holds the only thread as soon as it is free, the second then fills the queue
+            executor.submit(() -> {
+                running.countDown();
+                return await(release);
+            }).subscribe().with(ignored -> {
+            });
+            await(running);
+            executor.submit(() -> await(release)).subscribe().with(ignored -> {
+            });
+            given().get("/trajectories/1/distance/3?bandwidth=0.4").then().statusCode(503);
+            given().get("/trajectories/1/neighbours").then().statusCode(503);
+            given().get("/trajectories/1/distance/3?bandwidth=0.3").then().statusCode(200);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            latch.await();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package utility;
+
+import model.Point;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static utility.MathUtility.*;
+
+class MathUtilityTest {
+
+    @Test
+    void oneDegreeAlongTheEquatorIsAnArcOfOneDegree() {
+        assertEquals(6371 * Math.PI / 180, getDistance(0, 0, 0, 1), 1e-9);
+        assertEquals(6371 * Math.PI / 180, getDistance(0, 0, 1, 0), 1e-9);
+    }
+
+    @Test
+    void longitudeGapsShrinkWithTheCosineOfTheLatitude() {
+        // At 60 degrees north a degree of longitude spans half as much as at the equator, independent of the longitude
+        double expected = 2 * 6371 * Math.asin(Math.cos(Math.toRadians(60)) * Math.sin(Math.toRadians(0.5)));
+        assertEquals(expected, getDistance(60, 0, 60, 1), 1e-9);
+        assertEquals(expected, getDistance(60, 120, 60, 121), 1e-9);
+    }
+
+    @Test
+    void bigBenToTheStatueOfLiberty() {
+        assertEquals(5574.84, getDistance(51.5007, -0.1246, 40.6892, -74.0445), 0.01);
+    }
+
+    @Test
+    void pointOverloadMatchesCoordinates() {
+        var now = OffsetDateTime.now();
+        var from = new Point(now, 55.6761, 12.5683, 1);
+        var to = new Point(now, 56.1629, 10.2039, 1);
+        assertEquals(getDistance(55.6761, 12.5683, 56.1629, 10.2039), getDistance(from, to));
+        assertEquals(getDistance(from, to), getDistance(to, from), 1e-9);
+    }
+}
@@ -0,0 +1,130 @@
+package utility;
+
+import model.Point;
+import model.TrajectoryStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static utility.ProcessingUtility.*;
+
+class ProcessingUtilityTest {
+
+    /**
+     * Rows in the layout of go_track_trackspoints.csv: id, latitude, longitude, track_id, time.
+     */
+    private static final List<String[]> ROWS = List.of(
+            new String[]{"1", "-10.93", "-37.06", "7", "2014-09-13 07:24:37"},
+            new String[]{"2", "-10.91", "-37.04", "2", "2014-09-13 08:00:00"},
+            new String[]{"3", "-10.92", "-37.05", "7", "2014-09-13 07:24:32"},
+            new String[]{"4", "-10.90", "-37.03", "2", "2014-09-13 08:00:05"},
+            new String[]{"5", "-10.94", "-37.07", "7", "2014-09-13 07:24:42"},
+            new String[]{"6", "-10.80", "-37.00", "11", "2014-09-14 12:00:00"}
+    );
+
+    @Test
+    void rowsAreGroupedByTrackAndOrderedInTime() {
+        var trajectories = transformFileToTrajectories(ROWS);
+
+        assertEquals(3, trajectories.size());
+        assertUniqueIds(trajectories.get(0), 2, 2);
+        assertUniqueIds(trajectories.get(1), 7, 3);
+        assertUniqueIds(trajectories.get(2), 11, 1);
+
+        var track = trajectories.get(1);
+        assertEquals(OffsetDateTime.parse("2014-09-13T07:24:32+02:00").toInstant(), track.get(0).getTimestamp().toInstant());
+        assertEquals(-10.92, track.get(0).getLatitude());
+        assertEquals(-10.93, track.get(1).getLatitude());
+        assertEquals(-10.94, track.get(2).getLatitude());
+        for (int fix = 1; fix < track.size(); fix++) {
+            assertTrue(track.get(fix - 1).getTimestamp().isBefore(track.get(fix).getTimestamp()));
+        }
+    }
+
+    /**
+     * The Point path and the store builder group and order independently, so they must agree fix for fix.
+     */
+    @Test
+    void pointPathMatchesTheStoreBuilder() {
+        var fromPoints = TrajectoryStore.of(transformFileToTrajectories(ROWS));
+
+        var builder = new TrajectoryStore.Builder();
+        var timestampParser = new TimestampParser(ZoneId.of("Europe/Copenhagen"));
+        for (String[] row : ROWS) {
+            builder.add(Integer.parseInt(row[3]), Double.parseDouble(row[1]), Double.parseDouble(row[2]), timestampParser.parseEpochMillis(row[4]));
+        }
+        var built = builder.build();
+
+        assertArrayEquals(built.getUniqueIds(), fromPoints.getUniqueIds());
+        assertArrayEquals(built.getOffsets(), fromPoints.getOffsets());
+        for (int fix = 0; fix < built.getPointCount(); fix++) {
+            assertEquals(built.getLatitude(fix), fromPoints.getLatitude(fix));
+            assertEquals(built.getLongitude(fix), fromPoints.getLongitude(fix));
+            assertEquals(built.getTimestamp(fix), fromPoints.getTimestamp(fix));
+        }
+    }
+
+    @Test
+    void readTrajectoryStoreSkipsTheHeaderAndGroupsTheRows() {
+        var store = readTrajectoryStore(fixture("trackspoints.csv"), true);
+
+        assertEquals(6, store.getPointCount());
+        assertEquals(3, store.getTrajectoryCount());
+        assertArrayEquals(new int[]{1, 2, 3}, store.getUniqueIds());
+        assertArrayEquals(new int[]{0, 3, 4, 6}, store.getOffsets());
+        assertEquals(-10.9393413858164, store.getLatitude(0));
+        assertEquals(-37.0627421097422, store.getLongitude(0));
+        assertEquals(OffsetDateTime.parse("2014-09-13T07:24:32+02:00").toInstant().toEpochMilli(), store.getTimestamp(0));
+        assertEquals(-10.9100123, store.getLatitude(3));
+        assertEquals(OffsetDateTime.parse("2014-09-13T09:41:10+02:00").toInstant().toEpochMilli(), store.getTimestamp(3));
+        assertEquals(-37.0484221, store.getLongitude(5));
+    }
+
+    @Test
+    void headerIsParsedAsARowUnlessIgnored() {
+        var exception = assertThrows(IllegalArgumentException.class, () -> readTrajectoryStore(fixture("trackspoints.csv"), false));
+        assertTrue(exception.getMessage().contains("line 1"), exception.getMessage());
+    }
+
+    @Test
+    void malformedRowNamesTheLine() {
+        var exception = assertThrows(IllegalArgumentException.class, () -> readTrajectoryStore(fixture("trackspoints-malformed.csv"), true));
+        assertTrue(exception.getMessage().contains("line 3"), exception.getMessage());
+        assertTrue(exception.getMessage().contains("north"), exception.getMessage());
+    }
+
+    @Test
+    void shortRowNamesTheMissingColumns(@TempDir Path directory) throws IOException {
+        var file = directory.resolve("short.csv");
+        Files.writeString(file, "1,-10.93,-37.06,1,\"2014-09-13 07:24:32\"\n2,-10.93,-37.06,1\n");
+        var exception = assertThrows(IllegalArgumentException.class, () -> readTrajectoryStore(file.toString(), false));
+        assertTrue(exception.getMessage().contains("line 2"), exception.getMessage());
+        assertTrue(exception.getMessage().contains("expected 5 columns but found 4"), exception.getMessage());
+    }
+
+    /**
+     * Relative names resolve against the bundled data directory, so the fixture is passed as an absolute path.
+     */
+    private static String fixture(String name) {
+        try {
+            return Path.of(ProcessingUtilityTest.class.getResource("/data/" + name).toURI()).toString();
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void assertUniqueIds(List<Point> trajectory, int uniqueId, int size) {
+        assertEquals(size, trajectory.size());
+        for (Point point : trajectory) {
+            assertEquals(uniqueId, point.getUniqueId());
+        }
+    }
+}
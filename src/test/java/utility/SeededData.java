@@ -0,0 +1,61 @@
+package utility;
+
+import lombok.experimental.UtilityClass;
+import model.TrajectoryStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static utility.MathUtility.*;
+
+/**
+ * Reproducible inputs for the tests, generated like the benchmarks' SyntheticData: random walks of roughly 10 m
+ * steps around Copenhagen, one fix per second, and random-walk series for the stepwise search.
+ */
+@UtilityClass
+public class SeededData {
+
+    private final double STEP_DEGREES = 0.0001;
+    private final long START_MILLIS = 1_640_995_200_000L;
+
+    /**
+     * @return a store of trajectoryCount trajectories with uniqueIds 0.., each of a random length in [minimumLength, maximumLength]
+     */
+    public TrajectoryStore trajectoryStore(int trajectoryCount, int minimumLength, int maximumLength, long seed) {
+        var random = new Random(seed);
+        var builder = new TrajectoryStore.Builder();
+        for (int trajectory = 0; trajectory < trajectoryCount; trajectory++) {
+            int length = minimumLength + random.nextInt(maximumLength - minimumLength + 1);
+            double latitude = 55.68 + random.nextGaussian() * 0.005;
+            double longitude = 12.57 + random.nextGaussian() * 0.005;
+            for (int fix = 0; fix < length; fix++) {
+                builder.add(trajectory, latitude, longitude, START_MILLIS + fix * 1000L);
+                latitude += random.nextGaussian() * STEP_DEGREES;
+                longitude += random.nextGaussian() * STEP_DEGREES;
+            }
+        }
+        return builder.build();
+    }
+
+    public List<Double> series(int seriesLength, Random random) {
+        List<Double> series = new ArrayList<>(seriesLength);
+        double value = 0;
+        for (int i = 0; i < seriesLength; i++) {
+            value += random.nextGaussian();
+            series.add(value);
+        }
+        return series;
+    }
+
+    /**
+     * @return recordCount Haar-transformed random walks of seriesLength values
+     */
+    public List<List<Double>> haarDataSet(int recordCount, int seriesLength, Random random) {
+        List<List<Double>> dataSet = new ArrayList<>(recordCount);
+        for (int record = 0; record < recordCount; record++) {
+            dataSet.add(discreteHaarWaveletTransform(series(seriesLength, random)));
+        }
+        return dataSet;
+    }
+}
@@ -0,0 +1,144 @@
+package utility;
+
+import model.TrajectoryStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static model.PreparedCoordinates.EARTH_RADIUS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimplificationTest {
+
+    private static final TrajectoryStore WALKS = SeededData.trajectoryStore(30, 2, 400, 25);
+
+    /**
+     * Checked on a local tangent plane rather than with the cross-track formula under test. Over the few kilometres a
+     * walk spans the two differ by far less than the 1% slack.
+     */
+    @ParameterizedTest
+    @ValueSource(doubles = {0, 2, 10, 50})
+    void douglasPeuckerDropsOnlyFixesWithinTheTolerance(double toleranceMetres) {
+        var simplified = Simplification.DOUGLAS_PEUCKER.apply(WALKS, toleranceMetres).getStore();
+        assertSameTrajectories(WALKS, simplified);
+        for (int trajectory = 0; trajectory < WALKS.getTrajectoryCount(); trajectory++) {
+            int start = WALKS.getStart(trajectory);
+            int end = WALKS.getEnd(trajectory);
+            int keptIndex = simplified.getStart(trajectory);
+            int keptEnd = simplified.getEnd(trajectory);
+            assertEquals(WALKS.getTimestamp(start), simplified.getTimestamp(keptIndex));
+            assertEquals(WALKS.getTimestamp(end - 1), simplified.getTimestamp(keptEnd - 1));
+
+            int previousKept = start;
+            for (int index = start; index < end; index++) {
+                if (WALKS.getTimestamp(index) == simplified.getTimestamp(keptIndex)) {
+                    assertEquals(WALKS.getLatitude(index), simplified.getLatitude(keptIndex));
+                    assertEquals(WALKS.getLongitude(index), simplified.getLongitude(keptIndex));
+                    previousKept = index;
+                    keptIndex++;
+                    continue;
+                }
+                int nextKept = index;
+                while (WALKS.getTimestamp(nextKept) != simplified.getTimestamp(keptIndex)) {
+                    nextKept++;
+                }
+                double distance = planarSegmentDistanceInMetres(WALKS, previousKept, nextKept, index);
+                assertTrue(distance <= toleranceMetres * 1.01 + 1e-6,
+                        "fix " + index + " was dropped " + distance + " m from its segment");
+            }
+            assertEquals(keptEnd, keptIndex);
+        }
+    }
+
+    @Test
+    void douglasPeuckerCollapsesAStandstill() {
+        var builder = new TrajectoryStore.Builder();
+        for (int fix = 0; fix < 20; fix++) {
+            builder.add(7, 55.68, 12.57, fix * 1000L);
+        }
+        var result = Simplification.DOUGLAS_PEUCKER.apply(builder.build(), 1);
+        assertEquals(2, result.getSimplifiedPoints());
+        assertEquals(10, result.getCompressionRatio());
+    }
+
+    @Test
+    void resampleSkipsRepeatedTimestamps() {
+        var builder = new TrajectoryStore.Builder()
+                .add(1, 55.0, 12.0, 0)
+                .add(1, 55.1, 12.1, 1000)
+                .add(1, 55.2, 12.2, 1000)
+                .add(1, 55.3, 12.3, 1000)
+                .add(1, 55.4, 12.4, 4000)
+                .add(1, 55.5, 12.5, 4000);
+        var simplified = Simplification.RESAMPLE.apply(builder.build(), 1).getStore();
+
+        long[] expectedTimestamps = {0, 1000, 2000, 3000, 4000};
+        assertEquals(expectedTimestamps.length, simplified.getPointCount());
+        for (int index = 0; index < expectedTimestamps.length; index++) {
+            assertEquals(expectedTimestamps[index], simplified.getTimestamp(index));
+            assertFalse(Double.isNaN(simplified.getLatitude(index)));
+            assertFalse(Double.isNaN(simplified.getLongitude(index)));
+        }
+        // From the last fix at 1000, a third of the way to 4000
+        assertEquals(55.3 + (55.4 - 55.3) / 3, simplified.getLatitude(2), 1e-12);
+        assertEquals(55.5, simplified.getLatitude(4));
+    }
+
+    @Test
+    void resampleKeepsATrajectoryWithoutDurationAsOneFix() {
+        var builder = new TrajectoryStore.Builder()
+                .add(1, 55.0, 12.0, 5000)
+                .add(1, 55.1, 12.1, 5000)
+                .add(2, 56.0, 13.0, 0);
+        var simplified = Simplification.RESAMPLE.apply(builder.build(), 10).getStore();
+        assertEquals(1, simplified.getLength(0));
+        assertEquals(55.1, simplified.getLatitude(simplified.getStart(0)));
+        assertEquals(1, simplified.getLength(1));
+    }
+
+    @Test
+    void piecewiseAggregateKeepsTrajectoriesShorterThanTheTarget() {
+        var simplified = Simplification.PIECEWISE_AGGREGATE.apply(WALKS, 1000).getStore();
+        assertSameTrajectories(WALKS, simplified);
+        assertEquals(WALKS.getPointCount(), simplified.getPointCount());
+        for (int index = 0; index < WALKS.getPointCount(); index++) {
+            assertEquals(WALKS.getLatitude(index), simplified.getLatitude(index));
+            assertEquals(WALKS.getLongitude(index), simplified.getLongitude(index));
+            assertEquals(WALKS.getTimestamp(index), simplified.getTimestamp(index));
+        }
+    }
+
+    @Test
+    void piecewiseAggregateAveragesRuns() {
+        var simplified = Simplification.PIECEWISE_AGGREGATE.apply(WALKS, 10).getStore();
+        for (int trajectory = 0; trajectory < WALKS.getTrajectoryCount(); trajectory++) {
+            assertEquals(Math.min(10, WALKS.getLength(trajectory)), simplified.getLength(trajectory));
+        }
+    }
+
+    @Test
+    void outOfRangeParametersAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> Simplification.DOUGLAS_PEUCKER.apply(WALKS, -1));
+        assertThrows(IllegalArgumentException.class, () -> Simplification.RESAMPLE.apply(WALKS, 0));
+        assertThrows(IllegalArgumentException.class, () -> Simplification.PIECEWISE_AGGREGATE.apply(WALKS, 0));
+    }
+
+    private static void assertSameTrajectories(TrajectoryStore expected, TrajectoryStore actual) {
+        assertEquals(expected.getTrajectoryCount(), actual.getTrajectoryCount());
+        for (int trajectory = 0; trajectory < expected.getTrajectoryCount(); trajectory++) {
+            assertEquals(expected.getUniqueId(trajectory), actual.getUniqueId(trajectory));
+        }
+    }
+
+    private static double planarSegmentDistanceInMetres(TrajectoryStore store, int from, int to, int fix) {
+        double cosine = Math.cos(Math.toRadians(store.getLatitude(from)));
+        double scale = EARTH_RADIUS * 1000;
+        double toX = Math.toRadians(store.getLongitude(to) - store.getLongitude(from)) * cosine * scale;
+        double toY = Math.toRadians(store.getLatitude(to) - store.getLatitude(from)) * scale;
+        double fixX = Math.toRadians(store.getLongitude(fix) - store.getLongitude(from)) * cosine * scale;
+        double fixY = Math.toRadians(store.getLatitude(fix) - store.getLatitude(from)) * scale;
+        double lengthSquared = toX * toX + toY * toY;
+        double share = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, (fixX * toX + fixY * toY) / lengthSquared));
+        return Math.hypot(fixX - share * toX, fixY - share * toY);
+    }
+}
@@ -0,0 +1,74 @@
+package utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the parser with ZonedDateTime.parse in Europe/Copenhagen, where 2014 sprang forward from 02:00 to 03:00 on
+ * March 30 and fell back from 03:00 to 02:00 on October 26.
+ */
+class TimestampParserTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Copenhagen");
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss", Locale.US).withZone(ZONE);
+
+    @Test
+    void springForwardMatchesJavaTime() {
+        assertMatchesJavaTimeAround(LocalDateTime.of(2014, 3, 30, 2, 0));
+    }
+
+    @Test
+    void fallBackMatchesJavaTime() {
+        assertMatchesJavaTimeAround(LocalDateTime.of(2014, 10, 26, 2, 0));
+    }
+
+    /**
+     * 02:30 does not exist on the spring-forward day and exists twice on the fall-back day; java.time shifts the
+     * first forward by the gap and takes the earlier offset for the second.
+     */
+    @Test
+    void gapAndOverlapResolveLikeJavaTime() {
+        var parser = new TimestampParser(ZONE);
+        assertEquals(OffsetDateTime.parse("2014-03-30T03:30:00+02:00"), parser.parseOffsetDateTime("2014-03-30 02:30:00"));
+        assertEquals(OffsetDateTime.parse("2014-10-26T02:30:00+02:00"), parser.parseOffsetDateTime("2014-10-26 02:30:00"));
+        assertEquals(OffsetDateTime.parse("2014-10-26T02:30:00+02:00").toInstant().toEpochMilli(),
+                parser.parseEpochMillis("2014-10-26 02:30:00"));
+    }
+
+    /**
+     * The offset cache keys on the day, so a day parsed before a transition day must not leak its offset into it.
+     */
+    @Test
+    void cachedOffsetsDoNotCrossTransitions() {
+        var parser = new TimestampParser(ZONE);
+        for (int day = 20; day <= 31; day++) {
+            for (String time : new String[]{"00:30:00", "02:30:00", "12:00:00", "23:59:59"}) {
+                String text = String.format("2014-10-%02d %s", day, time);
+                assertEquals(javaTimeEpochMillis(text), parser.parseEpochMillis(text), text);
+            }
+        }
+    }
+
+    private static void assertMatchesJavaTimeAround(LocalDateTime transition) {
+        var parser = new TimestampParser(ZONE);
+        var formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss", Locale.US);
+        // A minute step over two days either side, so whole regular days bracket the irregular ones
+        for (var time = transition.minusDays(2); time.isBefore(transition.plusDays(2)); time = time.plusSeconds(61)) {
+            String text = time.format(formatter);
+            assertEquals(javaTimeEpochMillis(text), parser.parseEpochMillis(text), text);
+            assertEquals(OffsetDateTime.from(ZonedDateTime.parse(text, FORMAT)), parser.parseOffsetDateTime(text), text);
+        }
+    }
+
+    private static long javaTimeEpochMillis(String text) {
+        return ZonedDateTime.parse(text, FORMAT).toInstant().toEpochMilli();
+    }
+}